@@ -0,0 +1,159 @@
+package com.example.android.mygarden.adapter;
+
+/*
+* Copyright (C) 2017 The Android Open Source Project
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*  	http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+import android.app.Instrumentation;
+import android.database.MatrixCursor;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.filters.MediumTest;
+import android.support.test.runner.AndroidJUnit4;
+import android.support.v7.widget.GridLayoutManager;
+import android.support.v7.widget.RecyclerView;
+import android.view.ContextThemeWrapper;
+import android.view.View;
+
+import com.example.android.mygarden.R;
+import com.example.android.mygarden.core.PlantRules;
+import com.example.android.mygarden.provider.PlantRecord;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Counts the cells the garden grid rebinds for a data change, laid out at phone size in a grid
+ * like MainActivity's
+ */
+@RunWith(AndroidJUnit4.class)
+@MediumTest
+public class PlantListAdapterTest {
+
+    private static final int GARDEN_SIZE = 40;
+    private static final int WATERED_POSITION = 1;
+    private static final int GRID_WIDTH = 1080;
+    private static final int GRID_HEIGHT = 1920;
+
+    private Instrumentation mInstrumentation;
+    private RecyclerView mRecyclerView;
+    private PlantListAdapter mAdapter;
+    private long mTimeNow;
+
+    @Before
+    public void setUp() {
+        mInstrumentation = InstrumentationRegistry.getInstrumentation();
+        mTimeNow = System.currentTimeMillis();
+        mInstrumentation.runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                ContextThemeWrapper context = new ContextThemeWrapper(
+                        InstrumentationRegistry.getTargetContext(), R.style.AppTheme);
+                mAdapter = new PlantListAdapter(context);
+                mRecyclerView = new RecyclerView(context);
+                mRecyclerView.setLayoutManager(new GridLayoutManager(context, 4));
+                // Animations would bind the changed cell into a second holder
+                mRecyclerView.setItemAnimator(null);
+                mRecyclerView.setAdapter(mAdapter);
+            }
+        });
+    }
+
+    @Test
+    public void wateringOnePlant_rebindsOnlyItsImage() throws Exception {
+        final PlantRecord garden = buildGarden(-1);
+        final PlantRecord watered = buildGarden(WATERED_POSITION);
+
+        final int[] binds = new int[2];
+        final RecyclerView.ViewHolder[] holders = new RecyclerView.ViewHolder[2];
+        mInstrumentation.runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                mAdapter.swapPlants(garden, false);
+                layOut();
+                binds[0] = mAdapter.getBindCount();
+                holders[0] = mRecyclerView.findViewHolderForAdapterPosition(WATERED_POSITION);
+            }
+        });
+        assertTrue("Only " + binds[0] + " cells were bound", binds[0] > 1);
+        assertNotNull(holders[0]);
+
+        // The diff runs off the UI thread, wait for it to reach the adapter
+        final CountDownLatch changed = new CountDownLatch(1);
+        final Object[] change = new Object[3];
+        mInstrumentation.runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                mAdapter.registerAdapterDataObserver(new RecyclerView.AdapterDataObserver() {
+                    @Override
+                    public void onItemRangeChanged(int positionStart, int itemCount, Object payload) {
+                        change[0] = positionStart;
+                        change[1] = itemCount;
+                        change[2] = payload;
+                        changed.countDown();
+                    }
+                });
+                mAdapter.swapPlants(watered, false);
+            }
+        });
+        assertTrue("The diff was never dispatched", changed.await(5, TimeUnit.SECONDS));
+
+        mInstrumentation.runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                layOut();
+                binds[1] = mAdapter.getBindCount();
+                holders[1] = mRecyclerView.findViewHolderForAdapterPosition(WATERED_POSITION);
+            }
+        });
+
+        assertEquals(WATERED_POSITION, change[0]);
+        assertEquals(1, change[1]);
+        assertNotNull("The change should carry the image payload", change[2]);
+        assertEquals("Cells bound for one watered plant", 1, binds[1] - binds[0]);
+        // A payload bind keeps the cell, a full bind would have replaced it
+        assertSame(holders[0], holders[1]);
+    }
+
+    private void layOut() {
+        mRecyclerView.measure(
+                View.MeasureSpec.makeMeasureSpec(GRID_WIDTH, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(GRID_HEIGHT, View.MeasureSpec.EXACTLY));
+        mRecyclerView.layout(0, 0, GRID_WIDTH, GRID_HEIGHT);
+    }
+
+    // A day-old garden that can be watered, with the plant at wateredPosition just watered
+    private PlantRecord buildGarden(int wateredPosition) {
+        long createdAt = mTimeNow - PlantRules.DAY_MILLISECONDS;
+        long wateredAt = mTimeNow - PlantRules.MIN_AGE_BETWEEN_WATER - PlantRules.HOUR_MILLISECONDS;
+        MatrixCursor cursor = new MatrixCursor(PlantRecord.PROJECTION);
+        for (int i = 0; i < GARDEN_SIZE; i++) {
+            cursor.addRow(new Object[]{i + 1L, i % 4, createdAt + i, i == wateredPosition ? mTimeNow : wateredAt});
+        }
+        try {
+            return PlantRecord.from(cursor);
+        } finally {
+            cursor.close();
+        }
+    }
+}
@@ -0,0 +1,208 @@
+package com.example.android.mygarden.provider;
+
+/*
+* Copyright (C) 2017 The Android Open Source Project
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*  	http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+import android.content.ContentProviderOperation;
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.net.Uri;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.filters.LargeTest;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import com.example.android.mygarden.core.PlantRules;
+import com.example.android.mygarden.provider.PlantContract.PlantEntry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Times writes through the ContentResolver against the app's own provider. The test plants are
+ * created at the very start of the epoch, before any real plant, so they can be told apart from
+ * the garden and removed afterwards.
+ */
+@RunWith(AndroidJUnit4.class)
+@LargeTest
+public class PlantContentProviderTest {
+
+    private static final String TAG = PlantContentProviderTest.class.getSimpleName();
+
+    private static final int BULK_PLANTS = 10000;
+    private static final int SINGLE_PLANTS = 1000;
+    // Every test plant is created before this time
+    private static final long TEST_CREATED_BEFORE = BULK_PLANTS + SINGLE_PLANTS + 1;
+    // A single transaction has to beat one transaction per row by at least this much per row
+    private static final int MIN_BULK_SPEEDUP = 5;
+
+    // Waterings per round, and rounds per path, of the watering benchmark
+    private static final int WATERINGS_PER_ROUND = 100;
+    private static final int WATERING_ROUNDS = 11;
+    // Both paths are dominated by the same single-row write, so only a clear slowdown fails
+    private static final double MAX_COMPILED_TO_GENERIC = 1.2;
+
+    private ContentResolver mResolver;
+    private long mTimeNow;
+
+    @Before
+    public void setUp() {
+        Context context = InstrumentationRegistry.getTargetContext();
+        mResolver = context.getContentResolver();
+        mTimeNow = System.currentTimeMillis();
+        deleteTestPlants();
+    }
+
+    @After
+    public void tearDown() {
+        deleteTestPlants();
+    }
+
+    @Test
+    public void bulkInsert_10kPlants() {
+        ContentValues[] plants = new ContentValues[BULK_PLANTS];
+        for (int i = 0; i < plants.length; i++) {
+            plants[i] = buildPlant(i + 1);
+        }
+
+        long start = System.nanoTime();
+        int inserted = mResolver.bulkInsert(PlantEntry.CONTENT_URI, plants);
+        long bulkNanos = System.nanoTime() - start;
+
+        assertEquals(BULK_PLANTS, inserted);
+        assertEquals(BULK_PLANTS, countTestPlants());
+
+        // The same rows one insert, and so one transaction and notification, at a time
+        start = System.nanoTime();
+        for (int i = 0; i < SINGLE_PLANTS; i++) {
+            mResolver.insert(PlantEntry.CONTENT_URI, buildPlant(BULK_PLANTS + i + 1));
+        }
+        long singleNanos = System.nanoTime() - start;
+
+        long bulkNanosPerRow = bulkNanos / BULK_PLANTS;
+        long singleNanosPerRow = singleNanos / SINGLE_PLANTS;
+        Log.i(TAG, "bulkInsert: " + BULK_PLANTS + " plants in " + TimeUnit.NANOSECONDS.toMillis(bulkNanos)
+                + "ms, " + TimeUnit.SECONDS.toNanos(1) / Math.max(bulkNanosPerRow, 1) + " rows/s; insert: "
+                + TimeUnit.SECONDS.toNanos(1) / Math.max(singleNanosPerRow, 1) + " rows/s");
+        assertTrue("bulkInsert " + bulkNanosPerRow + "ns per row, insert " + singleNanosPerRow + "ns per row",
+                bulkNanosPerRow * MIN_BULK_SPEEDUP <= singleNanosPerRow);
+    }
+
+    @Test
+    public void waterPlant_compiledStatementIsNotSlowerThanGenericUpdate() {
+        Uri plantUri = mResolver.insert(PlantEntry.CONTENT_URI, buildPlant(1));
+        long plantId = ContentUris.parseId(plantUri);
+        Uri waterUri = PlantContract.buildWaterPlantUri(plantId);
+
+        // Warm both paths up, this also compiles the provider's watering statement
+        assertEquals(1, waterPlantCompiled(waterUri));
+        assertEquals(1, waterPlantGeneric(plantUri));
+
+        // Rounds of each path take turns so that both see the same device conditions
+        long[] compiledNanos = new long[WATERING_ROUNDS];
+        long[] genericNanos = new long[WATERING_ROUNDS];
+        for (int round = 0; round < WATERING_ROUNDS; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < WATERINGS_PER_ROUND; i++) waterPlantCompiled(waterUri);
+            compiledNanos[round] = (System.nanoTime() - start) / WATERINGS_PER_ROUND;
+
+            start = System.nanoTime();
+            for (int i = 0; i < WATERINGS_PER_ROUND; i++) waterPlantGeneric(plantUri);
+            genericNanos[round] = (System.nanoTime() - start) / WATERINGS_PER_ROUND;
+        }
+
+        long compiled = median(compiledNanos);
+        long generic = median(genericNanos);
+        Log.i(TAG, "waterPlant: compiled statement " + compiled / 1000 + "us, generic update "
+                + generic / 1000 + "us per watering");
+        assertTrue("compiled statement " + compiled + "ns, generic update " + generic + "ns",
+                compiled <= generic * MAX_COMPILED_TO_GENERIC);
+    }
+
+    // ACTION_WATER_PLANT, through the provider's cached statement
+    private int waterPlantCompiled(Uri waterUri) {
+        return mResolver.update(waterUri, null, null, null);
+    }
+
+    // The same watering through the generic single-plant update, with the same alive check
+    private int waterPlantGeneric(Uri plantUri) {
+        long timeNow = System.currentTimeMillis();
+        ContentValues values = new ContentValues();
+        values.put(PlantEntry.COLUMN_LAST_WATERED_TIME, timeNow);
+        return mResolver.update(plantUri, values, PlantEntry.COLUMN_LAST_WATERED_TIME + ">?",
+                new String[]{String.valueOf(timeNow - PlantRules.MAX_AGE_WITHOUT_WATER)});
+    }
+
+    private static long median(long[] values) {
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+
+    private ContentValues buildPlant(long createdAt) {
+        ContentValues values = new ContentValues();
+        values.put(PlantEntry.COLUMN_PLANT_TYPE, (int) (createdAt % 4));
+        values.put(PlantEntry.COLUMN_CREATION_TIME, createdAt);
+        values.put(PlantEntry.COLUMN_LAST_WATERED_TIME, mTimeNow);
+        return values;
+    }
+
+    private int countTestPlants() {
+        return queryTestPlantIds().length;
+    }
+
+    private long[] queryTestPlantIds() {
+        Cursor cursor = mResolver.query(PlantEntry.CONTENT_URI, new String[]{PlantEntry._ID},
+                PlantEntry.COLUMN_CREATION_TIME + " < ?",
+                new String[]{String.valueOf(TEST_CREATED_BEFORE)}, null);
+        try {
+            long[] plantIds = new long[cursor.getCount()];
+            for (int i = 0; cursor.moveToNext(); i++) {
+                plantIds[i] = cursor.getLong(0);
+            }
+            return plantIds;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    // The provider only deletes by ID, so the test plants go in one batch
+    private void deleteTestPlants() {
+        ArrayList<ContentProviderOperation> operations = new ArrayList<ContentProviderOperation>();
+        for (long plantId : queryTestPlantIds()) {
+            operations.add(ContentProviderOperation.newDelete(
+                    ContentUris.withAppendedId(PlantEntry.CONTENT_URI, plantId)).build());
+        }
+        if (operations.isEmpty()) return;
+        try {
+            mResolver.applyBatch(PlantContract.AUTHORITY, operations);
+        } catch (Exception e) {
+            throw new AssertionError("Failed to delete the test plants: " + e);
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package com.example.android.mygarden.provider;
+
+/*
+* Copyright (C) 2017 The Android Open Source Project
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*  	http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.os.Build;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.filters.LargeTest;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import com.example.android.mygarden.core.LatencyHistogram;
+import com.example.android.mygarden.provider.PlantContract.PlantEntry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Checks that with write-ahead logging the readers (loaders, widget and grid factory) keep
+ * reading while the watering service writes
+ */
+@RunWith(AndroidJUnit4.class)
+@LargeTest
+public class PlantDbHelperTest {
+
+    private static final String TAG = PlantDbHelperTest.class.getSimpleName();
+
+    private static final String TEST_DATABASE = "plant_db_helper_test.db";
+    private static final int GARDEN_SIZE = 1000;
+
+    // How long the writer keeps writing while the reads are timed
+    private static final long WRITE_MILLIS = 2000;
+    // A grid page read that waits on a write transaction takes far longer than this
+    private static final long MAX_READ_P99_MILLIS = 50;
+
+    private Context mContext;
+    private PlantDbHelper mDbHelper;
+    private ExecutorService mExecutor;
+
+    @Before
+    public void setUp() {
+        // WAL, and with it concurrent reads, starts at Jelly Bean
+        assumeTrue(Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN);
+
+        mContext = InstrumentationRegistry.getTargetContext();
+        mContext.deleteDatabase(TEST_DATABASE);
+        mDbHelper = new PlantDbHelper(mContext, TEST_DATABASE);
+        mExecutor = Executors.newSingleThreadExecutor();
+
+        SQLiteDatabase db = mDbHelper.getWritableDatabase();
+        long timeNow = System.currentTimeMillis();
+        db.beginTransaction();
+        try {
+            ContentValues values = new ContentValues();
+            for (int i = 0; i < GARDEN_SIZE; i++) {
+                values.put(PlantEntry.COLUMN_PLANT_TYPE, i % 4);
+                values.put(PlantEntry.COLUMN_CREATION_TIME, timeNow - i);
+                values.put(PlantEntry.COLUMN_LAST_WATERED_TIME, timeNow - i);
+                db.insert(PlantEntry.TABLE_NAME, null, values);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    @After
+    public void tearDown() {
+        if (mExecutor != null) mExecutor.shutdownNow();
+        if (mDbHelper != null) mDbHelper.close();
+        if (mContext != null) mContext.deleteDatabase(TEST_DATABASE);
+    }
+
+    @Test
+    public void read_isNotBlockedByAnOpenWriteTransaction() throws Exception {
+        SQLiteDatabase db = mDbHelper.getWritableDatabase();
+        db.beginTransactionNonExclusive();
+        try {
+            db.delete(PlantEntry.TABLE_NAME, null, null);
+
+            // Without WAL this read waits for the transaction, which only ends after it
+            Future<Integer> read = mExecutor.submit(new Callable<Integer>() {
+                @Override
+                public Integer call() {
+                    return countPlants();
+                }
+            });
+            // The reader sees the garden as it was before the uncommitted delete
+            assertEquals(GARDEN_SIZE, (int) read.get(5, TimeUnit.SECONDS));
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    @Test
+    public void readLatency_staysLowWhileWatering() throws Exception {
+        final AtomicBoolean writing = new AtomicBoolean(true);
+        Future<Integer> writer = mExecutor.submit(new Callable<Integer>() {
+            @Override
+            public Integer call() {
+                int transactions = 0;
+                while (writing.get()) {
+                    waterAllPlants(System.currentTimeMillis());
+                    transactions++;
+                }
+                return transactions;
+            }
+        });
+
+        LatencyHistogram reads = new LatencyHistogram("PlantDbHelperTest.read");
+        long end = System.currentTimeMillis() + WRITE_MILLIS;
+        try {
+            while (System.currentTimeMillis() < end) {
+                long start = System.nanoTime();
+                readGridPage();
+                reads.record(System.nanoTime() - start);
+            }
+        } finally {
+            writing.set(false);
+        }
+        int transactions = writer.get(5, TimeUnit.SECONDS);
+
+        LatencyHistogram.Snapshot snapshot = reads.snapshot();
+        Log.i(TAG, snapshot.getCount() + " reads during " + transactions + " write transactions, p50 "
+                + snapshot.getPercentileNanos(50) / 1000 + "us, p99 "
+                + snapshot.getPercentileNanos(99) / 1000 + "us, max "
+                + snapshot.getMaxNanos() / 1000 + "us");
+        assertTrue("The writer never committed", transactions > 0);
+        assertTrue("p99 read latency " + snapshot.getPercentileNanos(99) / 1000 + "us",
+                snapshot.getPercentileNanos(99) <= TimeUnit.MILLISECONDS.toNanos(MAX_READ_P99_MILLIS));
+    }
+
+    private int countPlants() {
+        Cursor cursor = mDbHelper.getReadableDatabase().query(PlantEntry.TABLE_NAME,
+                new String[]{PlantEntry._ID}, null, null, null, null, null);
+        try {
+            return cursor.getCount();
+        } finally {
+            cursor.close();
+        }
+    }
+
+    // The first page of the garden grid, as PlantRecordLoader reads it
+    private void readGridPage() {
+        Cursor cursor = mDbHelper.getReadableDatabase().query(PlantEntry.TABLE_NAME,
+                PlantRecord.PROJECTION, null, null, null, null, PlantRecord.SORT_ORDER, "100");
+        try {
+            PlantRecord.from(cursor);
+        } finally {
+            cursor.close();
+        }
+    }
+
+    // One batch watering, as ACTION_WATER_PLANTS writes it
+    private void waterAllPlants(long timeNow) {
+        SQLiteDatabase db = mDbHelper.getWritableDatabase();
+        db.beginTransactionNonExclusive();
+        try {
+            ContentValues values = new ContentValues();
+            values.put(PlantEntry.COLUMN_LAST_WATERED_TIME, timeNow);
+            db.update(PlantEntry.TABLE_NAME, values, null, null);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+}
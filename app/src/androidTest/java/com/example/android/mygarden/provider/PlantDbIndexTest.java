@@ -0,0 +1,222 @@
+package com.example.android.mygarden.provider;
+
+/*
+* Copyright (C) 2017 The Android Open Source Project
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*  	http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteQueryBuilder;
+import android.database.sqlite.SQLiteStatement;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.filters.LargeTest;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import com.example.android.mygarden.core.LatencyHistogram;
+import com.example.android.mygarden.provider.PlantContract.PlantEntry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks with a 100k plant garden that the queries the app runs most are planned on the time
+ * indexes, and that pages stay fast however deep into the garden they are
+ */
+@RunWith(AndroidJUnit4.class)
+@LargeTest
+public class PlantDbIndexTest {
+
+    private static final String TAG = PlantDbIndexTest.class.getSimpleName();
+
+    private static final String TEST_DATABASE = "plant_db_index_test.db";
+    private static final int GARDEN_SIZE = 100000;
+    private static final int PAGE_SIZE = 100;
+    private static final int PAGE_READS = 200;
+    // A page read that scans the table instead of the index takes far longer than this
+    private static final long MAX_PAGE_P99_MILLIS = 20;
+
+    // As PlantRecord.queryPageAfter pages past the last plant read
+    private static final String PAGE_AFTER_SELECTION = PlantEntry.COLUMN_CREATION_TIME + ">=? AND ("
+            + PlantEntry.COLUMN_CREATION_TIME + ">? OR ("
+            + PlantEntry.COLUMN_CREATION_TIME + "=? AND " + PlantEntry._ID + ">?))";
+    // As ACTION_WATER_PLANTS selects the plants that can be watered
+    private static final String WATERABLE_SELECTION = PlantEntry.COLUMN_LAST_WATERED_TIME + " > ? AND "
+            + PlantEntry.COLUMN_LAST_WATERED_TIME + " < ?";
+
+    private Context mContext;
+    private PlantDbHelper mDbHelper;
+
+    @Before
+    public void setUp() {
+        mContext = InstrumentationRegistry.getTargetContext();
+        mContext.deleteDatabase(TEST_DATABASE);
+        mDbHelper = new PlantDbHelper(mContext, TEST_DATABASE);
+    }
+
+    @After
+    public void tearDown() {
+        if (mDbHelper != null) mDbHelper.close();
+        if (mContext != null) mContext.deleteDatabase(TEST_DATABASE);
+    }
+
+    @Test
+    public void gridPage_readsTheCreationIndexInOrder() {
+        fillGarden();
+        String plan = explainQueryPlan(buildPageQuery(null), null);
+        assertTrue(plan, plan.contains(PlantDbHelper.INDEX_CREATION_TIME));
+        assertFalse(plan, plan.contains("TEMP B-TREE"));
+    }
+
+    @Test
+    public void nextPage_seeksThroughTheCreationIndex() {
+        fillGarden();
+        String plan = explainQueryPlan(buildPageQuery(PAGE_AFTER_SELECTION), pageAfterArgs(GARDEN_SIZE / 2));
+        assertTrue(plan, plan.contains("SEARCH"));
+        assertTrue(plan, plan.contains(PlantDbHelper.INDEX_CREATION_TIME));
+        assertFalse(plan, plan.contains("TEMP B-TREE"));
+    }
+
+    @Test
+    public void batchWatering_searchesTheWateringIndex() {
+        fillGarden();
+        String[] args = {"0", "1"};
+        String plan = explainQueryPlan("UPDATE " + PlantEntry.TABLE_NAME + " SET "
+                + PlantEntry.COLUMN_LAST_WATERED_TIME + "=0 WHERE " + WATERABLE_SELECTION, args);
+        assertTrue(plan, plan.contains("SEARCH"));
+        assertTrue(plan, plan.contains(PlantDbHelper.INDEX_LAST_WATERED_TIME));
+
+        // The provider lists the IDs it is about to update with the same selection
+        plan = explainQueryPlan(SQLiteQueryBuilder.buildQueryString(false, PlantEntry.TABLE_NAME,
+                new String[]{PlantEntry._ID}, WATERABLE_SELECTION, null, null, null, null), args);
+        assertTrue(plan, plan.contains(PlantDbHelper.INDEX_LAST_WATERED_TIME));
+    }
+
+    @Test
+    public void pageLatency_staysLowDeepIntoTheGarden() {
+        fillGarden();
+        SQLiteDatabase db = mDbHelper.getReadableDatabase();
+        String firstPage = buildPageQuery(null);
+        String nextPage = buildPageQuery(PAGE_AFTER_SELECTION);
+
+        LatencyHistogram pages = new LatencyHistogram("PlantDbIndexTest.page");
+        for (int i = 0; i < PAGE_READS; i++) {
+            // Alternate between the first page and pages spread across the whole garden
+            boolean first = i % 2 == 0;
+            String[] args = first ? null : pageAfterArgs((long) i * GARDEN_SIZE / PAGE_READS);
+            long start = System.nanoTime();
+            Cursor cursor = db.rawQuery(first ? firstPage : nextPage, args);
+            try {
+                PlantRecord.from(cursor);
+            } finally {
+                cursor.close();
+            }
+            pages.record(System.nanoTime() - start);
+        }
+
+        LatencyHistogram.Snapshot snapshot = pages.snapshot();
+        Log.i(TAG, snapshot.getCount() + " page reads of " + GARDEN_SIZE + " plants, p50 "
+                + snapshot.getPercentileNanos(50) / 1000 + "us, p99 "
+                + snapshot.getPercentileNanos(99) / 1000 + "us, max "
+                + snapshot.getMaxNanos() / 1000 + "us");
+        assertTrue("p99 page latency " + snapshot.getPercentileNanos(99) / 1000 + "us",
+                snapshot.getPercentileNanos(99) <= TimeUnit.MILLISECONDS.toNanos(MAX_PAGE_P99_MILLIS));
+    }
+
+    @Test
+    public void upgradeFromVersion1_keepsThePlantsAndAddsTheIndexes() {
+        mDbHelper.close();
+        SQLiteDatabase db = SQLiteDatabase.openOrCreateDatabase(mContext.getDatabasePath(TEST_DATABASE), null);
+        try {
+            db.execSQL("CREATE TABLE " + PlantEntry.TABLE_NAME + " ("
+                    + PlantEntry._ID + " INTEGER PRIMARY KEY AUTOINCREMENT,"
+                    + PlantEntry.COLUMN_PLANT_TYPE + " INTEGER NOT NULL, "
+                    + PlantEntry.COLUMN_CREATION_TIME + " TIMESTAMP NOT NULL, "
+                    + PlantEntry.COLUMN_LAST_WATERED_TIME + " TIMESTAMP NOT NULL)");
+            insertPlants(db, 10);
+            db.setVersion(1);
+        } finally {
+            db.close();
+        }
+
+        mDbHelper = new PlantDbHelper(mContext, TEST_DATABASE);
+        db = mDbHelper.getReadableDatabase();
+        assertEquals(10, DatabaseUtils.queryNumEntries(db, PlantEntry.TABLE_NAME));
+        assertEquals(2, DatabaseUtils.longForQuery(db, "SELECT COUNT(*) FROM sqlite_master WHERE type='index'"
+                + " AND name IN (?, ?)", new String[]{PlantDbHelper.INDEX_LAST_WATERED_TIME,
+                PlantDbHelper.INDEX_CREATION_TIME}));
+    }
+
+    // Left without ANALYZE statistics, as the app never gathers any
+    private void fillGarden() {
+        insertPlants(mDbHelper.getWritableDatabase(), GARDEN_SIZE);
+    }
+
+    // Plants created in ID order, watered in a different order
+    private static void insertPlants(SQLiteDatabase db, int count) {
+        SQLiteStatement statement = db.compileStatement("INSERT INTO " + PlantEntry.TABLE_NAME + " ("
+                + PlantEntry.COLUMN_PLANT_TYPE + ", " + PlantEntry.COLUMN_CREATION_TIME + ", "
+                + PlantEntry.COLUMN_LAST_WATERED_TIME + ") VALUES (?, ?, ?)");
+        db.beginTransaction();
+        try {
+            for (int i = 0; i < count; i++) {
+                statement.bindLong(1, i % 4);
+                statement.bindLong(2, i);
+                statement.bindLong(3, (i * 7919L) % count);
+                statement.executeInsert();
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            statement.close();
+            db.endTransaction();
+        }
+    }
+
+    private static String buildPageQuery(String selection) {
+        return SQLiteQueryBuilder.buildQueryString(false, PlantEntry.TABLE_NAME, PlantRecord.PROJECTION,
+                selection, null, null, PlantRecord.SORT_ORDER, String.valueOf(PAGE_SIZE));
+    }
+
+    // The plants are created in ID order, so the plant at a position has both as its key
+    private static String[] pageAfterArgs(long position) {
+        String createdAt = String.valueOf(position);
+        return new String[]{createdAt, createdAt, createdAt, String.valueOf(position + 1)};
+    }
+
+    // The detail column of every step of the plan, one per line
+    private String explainQueryPlan(String sql, String[] selectionArgs) {
+        Cursor cursor = mDbHelper.getReadableDatabase().rawQuery("EXPLAIN QUERY PLAN " + sql, selectionArgs);
+        try {
+            StringBuilder plan = new StringBuilder();
+            int detail = cursor.getColumnIndexOrThrow("detail");
+            while (cursor.moveToNext()) {
+                plan.append(cursor.getString(detail)).append('\n');
+            }
+            return plan.toString();
+        } finally {
+            cursor.close();
+        }
+    }
+}
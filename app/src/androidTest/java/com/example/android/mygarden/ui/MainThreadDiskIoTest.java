@@ -0,0 +1,223 @@
+package com.example.android.mygarden.ui;
+
+/*
+* Copyright (C) 2017 The Android Open Source Project
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*  	http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+import android.app.Activity;
+import android.app.Instrumentation;
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.content.Context;
+import android.content.Intent;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.StrictMode;
+import android.os.SystemClock;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.filters.LargeTest;
+import android.support.test.runner.AndroidJUnit4;
+import android.support.v7.widget.RecyclerView;
+
+import com.example.android.mygarden.R;
+import com.example.android.mygarden.core.PlantRules;
+import com.example.android.mygarden.provider.PlantContract.PlantEntry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertNotNull;
+
+/**
+ * Adds, waters and deletes a plant through the screens with StrictMode set to kill the process on
+ * any disk read or write on the main thread, so that work moved off the UI thread stays there
+ */
+@RunWith(AndroidJUnit4.class)
+@LargeTest
+public class MainThreadDiskIoTest {
+
+    // How long a queued write may take to land in the database
+    private static final long WRITE_TIMEOUT_MILLIS = 10000;
+
+    private Instrumentation mInstrumentation;
+    private Context mContext;
+    private StrictMode.ThreadPolicy mOldPolicy;
+    private final List<Activity> mActivities = new ArrayList<Activity>();
+    private final List<Long> mPlantIds = new ArrayList<Long>();
+
+    @Before
+    public void setUp() {
+        mInstrumentation = InstrumentationRegistry.getInstrumentation();
+        mContext = InstrumentationRegistry.getTargetContext();
+        mInstrumentation.runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                mOldPolicy = StrictMode.getThreadPolicy();
+                StrictMode.setThreadPolicy(new StrictMode.ThreadPolicy.Builder()
+                        .detectDiskReads()
+                        .detectDiskWrites()
+                        .penaltyLog()
+                        .penaltyDeath()
+                        .build());
+            }
+        });
+    }
+
+    @After
+    public void tearDown() {
+        for (Activity activity : mActivities) activity.finish();
+        mInstrumentation.waitForIdleSync();
+        mInstrumentation.runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                StrictMode.setThreadPolicy(mOldPolicy);
+            }
+        });
+        // Off the main thread, so the clean-up itself is not caught
+        ContentResolver resolver = mContext.getContentResolver();
+        for (long plantId : mPlantIds) {
+            resolver.delete(ContentUris.withAppendedId(PlantEntry.CONTENT_URI, plantId), null, null);
+        }
+    }
+
+    @Test
+    public void addPlant_doesNoDiskIoOnTheMainThread() throws Exception {
+        // The garden stays on screen so its loader and grid react to each change
+        startActivity(MainActivity.class, null);
+
+        long lastPlantId = getLastPlantId();
+        final AddPlantActivity addPlantActivity = (AddPlantActivity) startActivity(AddPlantActivity.class, null);
+        mInstrumentation.runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                RecyclerView types = (RecyclerView) addPlantActivity.findViewById(R.id.plant_types_recycler_view);
+                addPlantActivity.onPlantTypeClick(types.getChildAt(0));
+            }
+        });
+
+        long plantId = waitForPlantAfter(lastPlantId);
+        mPlantIds.add(plantId);
+        mInstrumentation.waitForIdleSync();
+    }
+
+    @Test
+    public void waterAndDeletePlant_doNoDiskIoOnTheMainThread() throws Exception {
+        startActivity(MainActivity.class, null);
+
+        // Watered long enough ago to be watered again
+        long timeNow = System.currentTimeMillis();
+        long wateredAt = timeNow - PlantRules.MIN_AGE_BETWEEN_WATER - PlantRules.HOUR_MILLISECONDS;
+        final long plantId = insertPlant(timeNow - PlantRules.DAY_MILLISECONDS, wateredAt);
+        mPlantIds.add(plantId);
+
+        Intent intent = new Intent().putExtra(PlantDetailActivity.EXTRA_PLANT_ID, plantId);
+        final PlantDetailActivity detailActivity =
+                (PlantDetailActivity) startActivity(PlantDetailActivity.class, intent);
+
+        mInstrumentation.runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                detailActivity.onWaterButtonClick(null);
+            }
+        });
+        waitForWateredAfter(plantId, wateredAt);
+        mInstrumentation.waitForIdleSync();
+
+        mInstrumentation.runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                detailActivity.onCutButtonClick(null);
+            }
+        });
+        waitForDeleted(plantId);
+        mInstrumentation.waitForIdleSync();
+    }
+
+    private Activity startActivity(Class<? extends Activity> activityClass, Intent intent) {
+        if (intent == null) intent = new Intent();
+        intent.setClass(mContext, activityClass);
+        intent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
+        Activity activity = mInstrumentation.startActivitySync(intent);
+        mActivities.add(activity);
+        mInstrumentation.waitForIdleSync();
+        return activity;
+    }
+
+    private long insertPlant(long createdAt, long wateredAt) {
+        ContentValues values = new ContentValues();
+        values.put(PlantEntry.COLUMN_PLANT_TYPE, 0);
+        values.put(PlantEntry.COLUMN_CREATION_TIME, createdAt);
+        values.put(PlantEntry.COLUMN_LAST_WATERED_TIME, wateredAt);
+        Uri uri = mContext.getContentResolver().insert(PlantEntry.CONTENT_URI, values);
+        assertNotNull(uri);
+        return ContentUris.parseId(uri);
+    }
+
+    private long getLastPlantId() {
+        Cursor cursor = mContext.getContentResolver().query(PlantEntry.CONTENT_URI,
+                new String[]{PlantEntry._ID}, null, null, PlantEntry._ID + " DESC");
+        try {
+            return cursor != null && cursor.moveToFirst() ? cursor.getLong(0) : 0;
+        } finally {
+            if (cursor != null) cursor.close();
+        }
+    }
+
+    private long waitForPlantAfter(long lastPlantId) {
+        long deadline = SystemClock.uptimeMillis() + WRITE_TIMEOUT_MILLIS;
+        while (SystemClock.uptimeMillis() < deadline) {
+            long plantId = getLastPlantId();
+            if (plantId > lastPlantId) return plantId;
+            SystemClock.sleep(50);
+        }
+        throw new AssertionError("The new plant was never inserted");
+    }
+
+    private void waitForWateredAfter(long plantId, long wateredAt) {
+        long deadline = SystemClock.uptimeMillis() + WRITE_TIMEOUT_MILLIS;
+        while (SystemClock.uptimeMillis() < deadline) {
+            Long current = queryWateredAt(plantId);
+            if (current != null && current > wateredAt) return;
+            SystemClock.sleep(50);
+        }
+        throw new AssertionError("Plant " + plantId + " was never watered");
+    }
+
+    private void waitForDeleted(long plantId) {
+        long deadline = SystemClock.uptimeMillis() + WRITE_TIMEOUT_MILLIS;
+        while (SystemClock.uptimeMillis() < deadline) {
+            if (queryWateredAt(plantId) == null) return;
+            SystemClock.sleep(50);
+        }
+        throw new AssertionError("Plant " + plantId + " was never deleted");
+    }
+
+    private Long queryWateredAt(long plantId) {
+        Cursor cursor = mContext.getContentResolver().query(
+                ContentUris.withAppendedId(PlantEntry.CONTENT_URI, plantId),
+                new String[]{PlantEntry.COLUMN_LAST_WATERED_TIME}, null, null, null);
+        try {
+            return cursor != null && cursor.moveToFirst() ? cursor.getLong(0) : null;
+        } finally {
+            if (cursor != null) cursor.close();
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.android.mygarden.ui;
+
+/*
+* Copyright (C) 2017 The Android Open Source Project
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*  	http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.os.Debug;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.filters.SmallTest;
+import android.support.test.runner.AndroidJUnit4;
+import android.view.View;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks that drawing the water meter allocates nothing, since it is drawn on every frame of
+ * the fill animation
+ */
+@RunWith(AndroidJUnit4.class)
+@SmallTest
+public class WaterLevelViewTest {
+
+    private static final int DRAW_CALLS = 1000;
+
+    private WaterLevelView mView;
+    private Bitmap mBitmap;
+    private Canvas mCanvas;
+
+    @Before
+    public void setUp() {
+        mView = new WaterLevelView(InstrumentationRegistry.getTargetContext(), null);
+        int unspecified = View.MeasureSpec.makeMeasureSpec(0, View.MeasureSpec.UNSPECIFIED);
+        mView.measure(unspecified, unspecified);
+        mView.layout(0, 0, mView.getMeasuredWidth(), mView.getMeasuredHeight());
+
+        mBitmap = Bitmap.createBitmap(mView.getMeasuredWidth(), mView.getMeasuredHeight(),
+                Bitmap.Config.ARGB_8888);
+        mCanvas = new Canvas(mBitmap);
+    }
+
+    @After
+    public void tearDown() {
+        if (mBitmap != null) mBitmap.recycle();
+    }
+
+    @SuppressWarnings("deprecation")
+    @Test
+    public void onDraw_allocatesNothing() {
+        // Anything set up lazily on the first frames is not counted
+        drawLevels(DRAW_CALLS / 10);
+
+        Debug.resetThreadAllocCount();
+        Debug.startAllocCounting();
+        try {
+            drawLevels(DRAW_CALLS);
+        } finally {
+            Debug.stopAllocCounting();
+        }
+        assertEquals("Objects allocated over " + DRAW_CALLS + " draws", 0, Debug.getThreadAllocCount());
+    }
+
+    // Draws every level from empty to full in turn, both the empty and the partial arcs
+    private void drawLevels(int drawCalls) {
+        for (int i = 0; i < drawCalls; i++) {
+            mView.setValue(i % 101);
+            mView.onDraw(mCanvas);
+        }
+    }
+}
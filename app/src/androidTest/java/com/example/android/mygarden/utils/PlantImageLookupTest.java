@@ -0,0 +1,138 @@
+package com.example.android.mygarden.utils;
+
+/*
+* Copyright (C) 2017 The Android Open Source Project
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*  	http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+import android.content.Context;
+import android.content.res.TypedArray;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.filters.LargeTest;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import com.example.android.mygarden.R;
+import com.example.android.mygarden.core.PlantSize;
+import com.example.android.mygarden.core.PlantStatus;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Compares the precomputed plant image table against the reflective getIdentifier lookup it
+ * replaced, over every type, status and size
+ */
+@RunWith(AndroidJUnit4.class)
+@LargeTest
+public class PlantImageLookupTest {
+
+    private static final String TAG = PlantImageLookupTest.class.getSimpleName();
+
+    // Passes over every combination per round, and rounds per lookup
+    private static final int PASSES_PER_ROUND = 10;
+    private static final int ROUNDS = 11;
+
+    private Context mContext;
+    private int mTypeCount;
+
+    @Before
+    public void setUp() {
+        mContext = InstrumentationRegistry.getTargetContext();
+        TypedArray plantTypes = mContext.getResources().obtainTypedArray(R.array.plant_types);
+        mTypeCount = plantTypes.length();
+        plantTypes.recycle();
+    }
+
+    @Test
+    public void table_matchesTheReflectiveLookup() {
+        for (int type = 0; type < mTypeCount; type++) {
+            for (PlantStatus status : PlantStatus.values()) {
+                for (PlantSize size : PlantSize.values()) {
+                    assertEquals(type + " " + status + " " + size,
+                            getPlantImgResReflective(mContext, type, status, size),
+                            PlantUtils.getPlantImgRes(mContext, type, status, size));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void table_isFasterThanTheReflectiveLookup() {
+        // Builds the table and warms both paths up
+        lookUpAll(false);
+        lookUpAll(true);
+
+        // Rounds of each lookup take turns so that both see the same device conditions
+        long[] tableNanos = new long[ROUNDS];
+        long[] reflectiveNanos = new long[ROUNDS];
+        int lookups = 0;
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < PASSES_PER_ROUND; i++) lookups = lookUpAll(false);
+            tableNanos[round] = (System.nanoTime() - start) / (PASSES_PER_ROUND * lookups);
+
+            start = System.nanoTime();
+            for (int i = 0; i < PASSES_PER_ROUND; i++) lookUpAll(true);
+            reflectiveNanos[round] = (System.nanoTime() - start) / (PASSES_PER_ROUND * lookups);
+        }
+
+        long table = median(tableNanos);
+        long reflective = median(reflectiveNanos);
+        Log.i(TAG, "Plant image lookup over " + lookups + " combinations: table " + table
+                + "ns, getIdentifier " + reflective + "ns per lookup");
+        assertTrue("table " + table + "ns, getIdentifier " + reflective + "ns",
+                table < reflective);
+    }
+
+    // Looks up every combination once, returning how many there are
+    private int lookUpAll(boolean reflective) {
+        int lookups = 0;
+        for (int type = 0; type < mTypeCount; type++) {
+            for (PlantStatus status : PlantStatus.values()) {
+                for (PlantSize size : PlantSize.values()) {
+                    if (reflective) getPlantImgResReflective(mContext, type, status, size);
+                    else PlantUtils.getPlantImgRes(mContext, type, status, size);
+                    lookups++;
+                }
+            }
+        }
+        return lookups;
+    }
+
+    // The lookup as it was before the table, resolving the resource name on every call
+    private static int getPlantImgResReflective(Context context, int type, PlantStatus status, PlantSize size) {
+        TypedArray plantTypes = context.getResources().obtainTypedArray(R.array.plant_types);
+        String resName = plantTypes.getString(type);
+        plantTypes.recycle();
+        if (status == PlantStatus.DYING) resName += "_danger";
+        else if (status == PlantStatus.DEAD) resName += "_dead";
+        if (size == PlantSize.TINY) resName += "_1";
+        else if (size == PlantSize.JUVENILE) resName += "_2";
+        else if (size == PlantSize.FULLY_GROWN) resName += "_3";
+        return context.getResources().getIdentifier(resName, "drawable", context.getPackageName());
+    }
+
+    private static long median(long[] values) {
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+}
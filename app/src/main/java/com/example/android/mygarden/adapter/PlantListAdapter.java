@@ -17,7 +17,9 @@ package com.example.android.mygarden.adapter;
 */
 
 import android.content.Context;
-import android.database.Cursor;
+import android.os.AsyncTask;
+import android.support.v7.util.DiffUtil;
+import android.support.v7.widget.LinearLayoutManager;
 import android.support.v7.widget.RecyclerView;
 import android.view.LayoutInflater;
 import android.view.View;
@@ -26,22 +28,68 @@ import android.widget.ImageView;
 import android.widget.TextView;
 
 import com.example.android.mygarden.R;
-import com.example.android.mygarden.provider.PlantContract.PlantEntry;
+import com.example.android.mygarden.core.GardenState;
+import com.example.android.mygarden.provider.PlantRecord;
+import com.example.android.mygarden.utils.GardenClock;
+import com.example.android.mygarden.utils.PerfTrace;
+import com.example.android.mygarden.utils.PlantBitmapCache;
 import com.example.android.mygarden.utils.PlantUtils;
 
-public class PlantListAdapter extends RecyclerView.Adapter<PlantListAdapter.PlantViewHolder> {
+import java.util.List;
+
+public class PlantListAdapter extends RecyclerView.Adapter<PlantListAdapter.PlantViewHolder>
+        implements GardenClock.OnTickListener {
+
+    // Partial bind payload for when only the plant image has changed with time
+    private static final Object PAYLOAD_IMAGE = new Object();
 
     private Context mContext;
-    private Cursor mCursor;
+    private PlantRecord mPlants;
+
+    // Plant images decoded at the cell size, shared with the other screens
+    private final PlantBitmapCache mBitmapCache;
+
+    // The image shown at each position, compared on every clock tick
+    private int[] mImageRes;
+
+    // Ticks when the next plant on screen grows or wilts
+    private final GardenClock mClock = new GardenClock(this);
+    // When the clock is due to tick, Long.MAX_VALUE for never
+    private long mNextTick = Long.MAX_VALUE;
+
+    // The grid showing the plants, to know which of them are on screen
+    private RecyclerView mRecyclerView;
+
+    // Bumped on every swap so that a diff finishing after a newer swap is dropped
+    private int mSwapGeneration;
+
+    // Number of binds since creation, to compare how many cells each data change rebinds
+    private int mBindCount;
+
+    // Ask for the next page when a cell this close to the end of the loaded plants is bound
+    private static final int LOAD_MORE_THRESHOLD = 20;
+
+    private OnLoadMoreListener mOnLoadMoreListener;
+    private boolean mHasMore;
+    private boolean mLoadMoreRequested;
 
     /**
-     * Constructor using the context and the db cursor
+     * Listener for when the grid scrolls close to the end of the plants loaded so far
+     */
+    public interface OnLoadMoreListener {
+        void onLoadMore();
+    }
+
+    /**
+     * Constructor using the context, the plants are passed in later through swapPlants
      *
      * @param context the calling context/activity
      */
-    public PlantListAdapter(Context context, Cursor cursor) {
+    public PlantListAdapter(Context context) {
         this.mContext = context;
-        this.mCursor = cursor;
+        mBitmapCache = PlantBitmapCache.getInstance(context);
+        setPlants(PlantRecord.EMPTY);
+        setHasStableIds(true);
     }
 
     /**
@@ -61,35 +109,194 @@ public class PlantListAdapter extends RecyclerView.Adapter<PlantListAdapter.Plan
 
     @Override
     public void onBindViewHolder(PlantViewHolder holder, int position) {
+        long start = PerfTrace.begin(PerfTrace.ADAPTER_BIND);
+        try {
+            bindPlant(holder, position);
+        } finally {
+            PerfTrace.end(PerfTrace.ADAPTER_BIND, start);
+        }
+    }
+
+    private void bindPlant(PlantViewHolder holder, int position) {
+        mBindCount++;
 
-        mCursor.moveToPosition(position);
-        int idIndex = mCursor.getColumnIndex(PlantEntry._ID);
-        int createTimeIndex = mCursor.getColumnIndex(PlantEntry.COLUMN_CREATION_TIME);
-        int waterTimeIndex = mCursor.getColumnIndex(PlantEntry.COLUMN_LAST_WATERED_TIME);
-        int plantTypeIndex = mCursor.getColumnIndex(PlantEntry.COLUMN_PLANT_TYPE);
+        // Binding follows the GridLayoutManager's scrolling, so use it to load pages on demand
+        if (mHasMore && !mLoadMoreRequested && mOnLoadMoreListener != null
+                && position >= getItemCount() - LOAD_MORE_THRESHOLD) {
+            mLoadMoreRequested = true;
+            mOnLoadMoreListener.onLoadMore();
+        }
 
-        long plantId = mCursor.getLong(idIndex);
-        int plantType = mCursor.getInt(plantTypeIndex);
-        long createdAt = mCursor.getLong(createTimeIndex);
-        long wateredAt = mCursor.getLong(waterTimeIndex);
+        long plantId = mPlants.getId(position);
+        int plantType = mPlants.getType(position);
+        long createdAt = mPlants.getCreatedAt(position);
+        long wateredAt = mPlants.getWateredAt(position);
         long timeNow = System.currentTimeMillis();
 
         int imgRes = PlantUtils.getPlantImageRes(mContext, timeNow - createdAt, timeNow - wateredAt, plantType);
+        mImageRes[position] = imgRes;
+        // The clock only follows the plants on screen, so this one may change before its next tick
+        tickBy(PlantUtils.getNextTransitionTime(createdAt, wateredAt, timeNow));
 
-        holder.plantImageView.setImageResource(imgRes);
+        mBitmapCache.loadInto(holder.plantImageView, imgRes);
         holder.plantNameView.setText(String.valueOf(plantId));
         holder.plantImageView.setTag(plantId);
     }
 
-    public void swapCursor(Cursor newCursor) {
-        if (mCursor != null) {
-            mCursor.close();
+    @Override
+    public void onBindViewHolder(PlantViewHolder holder, int position, List<Object> payloads) {
+        // Clock ticks only swap the image, everything else in the cell is unchanged
+        if (!payloads.isEmpty() && !hasOtherPayload(payloads)) {
+            long start = PerfTrace.begin(PerfTrace.ADAPTER_BIND_IMAGE);
+            mBindCount++;
+            // Same plant, so keep the old image up until the new one is ready
+            mBitmapCache.loadInto(holder.plantImageView, mImageRes[position], false);
+            PerfTrace.end(PerfTrace.ADAPTER_BIND_IMAGE, start);
+            return;
         }
-        mCursor = newCursor;
-        if (mCursor != null) {
-            // Force the RecyclerView to refresh
+        onBindViewHolder(holder, position);
+    }
+
+    private static boolean hasOtherPayload(List<Object> payloads) {
+        for (Object payload : payloads) {
+            if (payload != PAYLOAD_IMAGE) return true;
+        }
+        return false;
+    }
+
+    @Override
+    public long getItemId(int position) {
+        return mPlants.getId(position);
+    }
+
+    /**
+     * Takes a newly loaded record, rebinding only the plants that were added, removed or changed.
+     * The diff against the current plants is worked out off the UI thread.
+     *
+     * @param newPlants The newly loaded plants, or null to clear the garden
+     * @param hasMore   Whether there are more plants after the ones in the record
+     */
+    public void swapPlants(PlantRecord newPlants, boolean hasMore) {
+        mHasMore = hasMore;
+        mLoadMoreRequested = false;
+        if (newPlants == null) newPlants = PlantRecord.EMPTY;
+        if (newPlants == mPlants) return;
+
+        final PlantRecord oldPlants = mPlants;
+        final int generation = ++mSwapGeneration;
+
+        // Nothing to compare against, so skip the diff
+        if (oldPlants.size() == 0 || newPlants.size() == 0) {
+            setPlants(newPlants);
             this.notifyDataSetChanged();
+            return;
         }
+
+        final PlantRecord plants = newPlants;
+        new AsyncTask<Void, Void, DiffUtil.DiffResult>() {
+            @Override
+            protected DiffUtil.DiffResult doInBackground(Void... params) {
+                return DiffUtil.calculateDiff(new PlantDiffCallback(oldPlants, plants), false);
+            }
+
+            @Override
+            protected void onPostExecute(DiffUtil.DiffResult diffResult) {
+                if (generation != mSwapGeneration) return;
+                setPlants(plants);
+                diffResult.dispatchUpdatesTo(PlantListAdapter.this);
+            }
+        }.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
+    }
+
+    private void setPlants(PlantRecord plants) {
+        long timeNow = System.currentTimeMillis();
+        mPlants = plants;
+        // Cells the diff leaves alone are not rebound, so work out every image up front
+        GardenState state = plants.classify(timeNow);
+        mImageRes = new int[plants.size()];
+        for (int i = 0; i < mImageRes.length; i++) {
+            mImageRes[i] = PlantUtils.getPlantImageRes(mContext, state.getCode(i));
+        }
+        mNextTick = state.getNextTransitionTime();
+        mClock.scheduleAt(mNextTick);
+    }
+
+    /**
+     * Starts or stops updating the plant images as the plants grow and wilt
+     *
+     * @param running true while the garden is on screen
+     */
+    public void setClockRunning(boolean running) {
+        if (running) mClock.start();
+        else mClock.stop();
+    }
+
+    // Rebinds the image of only the cells on screen whose plant has changed state since they were
+    // bound. Cells off screen catch up when they are bound or come back on screen.
+    @Override
+    public void onTick(long timeNow) {
+        mNextTick = Long.MAX_VALUE;
+        int first = 0;
+        int last = mPlants.size() - 1;
+        RecyclerView.LayoutManager layoutManager =
+                mRecyclerView != null ? mRecyclerView.getLayoutManager() : null;
+        if (layoutManager instanceof LinearLayoutManager) {
+            first = ((LinearLayoutManager) layoutManager).findFirstVisibleItemPosition();
+            last = ((LinearLayoutManager) layoutManager).findLastVisibleItemPosition();
+            if (first == RecyclerView.NO_POSITION) return;
+        }
+
+        for (int i = first; i <= last && i < mImageRes.length; i++) {
+            if (updateImageRes(i, timeNow)) notifyItemChanged(i, PAYLOAD_IMAGE);
+        }
+    }
+
+    // Cells kept aside by the grid come back without being bound, so catch them up here
+    @Override
+    public void onViewAttachedToWindow(PlantViewHolder holder) {
+        int position = holder.getAdapterPosition();
+        if (position == RecyclerView.NO_POSITION || position >= mImageRes.length) return;
+        if (updateImageRes(position, System.currentTimeMillis())) {
+            mBitmapCache.loadInto(holder.plantImageView, mImageRes[position], false);
+        }
+    }
+
+    /**
+     * Works out the image of the plant at a position and has the clock tick by its next change
+     *
+     * @return true if the image differs from the one the cell was last given
+     */
+    private boolean updateImageRes(int position, long timeNow) {
+        long createdAt = mPlants.getCreatedAt(position);
+        long wateredAt = mPlants.getWateredAt(position);
+        tickBy(PlantUtils.getNextTransitionTime(createdAt, wateredAt, timeNow));
+
+        int imgRes = PlantUtils.getPlantImageRes(mContext, timeNow - createdAt, timeNow - wateredAt,
+                mPlants.getType(position));
+        if (imgRes == mImageRes[position]) return false;
+        mImageRes[position] = imgRes;
+        return true;
+    }
+
+    // Brings the next tick forward to the given time if it is due later
+    private void tickBy(long time) {
+        if (time >= mNextTick) return;
+        mNextTick = time;
+        mClock.scheduleAt(time);
+    }
+
+    @Override
+    public void onAttachedToRecyclerView(RecyclerView recyclerView) {
+        mRecyclerView = recyclerView;
+    }
+
+    @Override
+    public void onDetachedFromRecyclerView(RecyclerView recyclerView) {
+        mRecyclerView = null;
+    }
+
+    public void setOnLoadMoreListener(OnLoadMoreListener listener) {
+        mOnLoadMoreListener = listener;
     }
 
     /**
@@ -99,8 +306,16 @@ public class PlantListAdapter extends RecyclerView.Adapter<PlantListAdapter.Plan
      */
     @Override
     public int getItemCount() {
-        if (mCursor == null) return 0;
-        return mCursor.getCount();
+        return mPlants.size();
+    }
+
+    /**
+     * Returns how many times a cell was bound since the adapter was created
+     *
+     * @return The number of onBindViewHolder calls
+     */
+    public int getBindCount() {
+        return mBindCount;
     }
 
     /**
@@ -118,4 +333,45 @@ public class PlantListAdapter extends RecyclerView.Adapter<PlantListAdapter.Plan
         }
 
     }
+
+    /**
+     * Matches plants by ID and treats them as changed when any of their stored values differ
+     */
+    private static class PlantDiffCallback extends DiffUtil.Callback {
+
+        private final PlantRecord mOld;
+        private final PlantRecord mNew;
+
+        PlantDiffCallback(PlantRecord oldPlants, PlantRecord newPlants) {
+            mOld = oldPlants;
+            mNew = newPlants;
+        }
+
+        @Override
+        public int getOldListSize() {
+            return mOld.size();
+        }
+
+        @Override
+        public int getNewListSize() {
+            return mNew.size();
+        }
+
+        @Override
+        public boolean areItemsTheSame(int oldItemPosition, int newItemPosition) {
+            return mOld.getId(oldItemPosition) == mNew.getId(newItemPosition);
+        }
+
+        @Override
+        public boolean areContentsTheSame(int oldItemPosition, int newItemPosition) {
+            return mOld.sameContents(oldItemPosition, mNew, newItemPosition);
+        }
+
+        // A cell only shows the plant's ID and image, so a plant of the same type that was
+        // watered or otherwise changed only needs its image swapped
+        @Override
+        public Object getChangePayload(int oldItemPosition, int newItemPosition) {
+            return mOld.getType(oldItemPosition) == mNew.getType(newItemPosition) ? PAYLOAD_IMAGE : null;
+        }
+    }
 }
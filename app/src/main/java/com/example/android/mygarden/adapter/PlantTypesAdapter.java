@@ -27,12 +27,16 @@ import android.widget.ImageView;
 import android.widget.TextView;
 
 import com.example.android.mygarden.R;
+import com.example.android.mygarden.core.PlantSize;
+import com.example.android.mygarden.core.PlantStatus;
+import com.example.android.mygarden.utils.PlantBitmapCache;
 import com.example.android.mygarden.utils.PlantUtils;
 
 public class PlantTypesAdapter extends RecyclerView.Adapter<PlantTypesAdapter.PlantViewHolder> {
 
     Context mContext;
     TypedArray mPlantTypes;
+    PlantBitmapCache mBitmapCache;
 
     /**
      * Constructor using the context and the db cursor
@@ -43,6 +47,7 @@ public class PlantTypesAdapter extends RecyclerView.Adapter<PlantTypesAdapter.Pl
         mContext = context;
         Resources res = mContext.getResources();
         mPlantTypes = res.obtainTypedArray(R.array.plant_types);
+        mBitmapCache = PlantBitmapCache.getInstance(context);
     }
 
     /**
@@ -64,9 +69,9 @@ public class PlantTypesAdapter extends RecyclerView.Adapter<PlantTypesAdapter.Pl
     public void onBindViewHolder(PlantViewHolder holder, int position) {
         int imgRes = PlantUtils.getPlantImgRes(
                 mContext, position,
-                PlantUtils.PlantStatus.ALIVE,
-                PlantUtils.PlantSize.FULLY_GROWN);
-        holder.plantImageView.setImageResource(imgRes);
+                PlantStatus.ALIVE,
+                PlantSize.FULLY_GROWN);
+        mBitmapCache.loadInto(holder.plantImageView, imgRes);
         holder.plantTypeText.setText(PlantUtils.getPlantTypeName(mContext, position));
         holder.plantImageView.setTag(position);
     }
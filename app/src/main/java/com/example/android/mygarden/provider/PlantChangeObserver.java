@@ -0,0 +1,127 @@
+package com.example.android.mygarden.provider;
+
+/*
+* Copyright (C) 2017 The Android Open Source Project
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*  	http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+import android.content.ContentResolver;
+import android.database.ContentObserver;
+import android.net.Uri;
+import android.os.Handler;
+
+import java.util.Arrays;
+
+/**
+ * Watches the plants table and collects the IDs of the plants that changed, read back from the
+ * URIs the PlantContentProvider notifies with. A notification without IDs, or too many IDs to
+ * track, means the whole table has to be read again.
+ */
+public class PlantChangeObserver extends ContentObserver {
+
+    private final Runnable mOnChange;
+
+    // The IDs collected since the last take, meaningless while mAllChanged is set
+    private long[] mChangedIds = new long[16];
+    private int mChangedCount;
+    // Starts set, as nothing has been read yet
+    private boolean mAllChanged = true;
+
+    /**
+     * @param handler  The handler to run onChange on, or null to run it on a binder thread
+     * @param onChange Run after each change is recorded, may be null
+     */
+    public PlantChangeObserver(Handler handler, Runnable onChange) {
+        super(handler);
+        mOnChange = onChange;
+    }
+
+    /**
+     * Starts watching every plant, the individual plant URIs included
+     */
+    public void register(ContentResolver resolver) {
+        resolver.registerContentObserver(PlantContract.PlantEntry.CONTENT_URI, true, this);
+    }
+
+    public void unregister(ContentResolver resolver) {
+        resolver.unregisterContentObserver(this);
+    }
+
+    // Only called directly before Jelly Bean, where the changed URI is not passed on
+    @Override
+    public void onChange(boolean selfChange) {
+        onChange(selfChange, null);
+    }
+
+    @Override
+    public void onChange(boolean selfChange, Uri uri) {
+        record(PlantContract.getChangedPlantIds(uri));
+        if (mOnChange != null) mOnChange.run();
+    }
+
+    private synchronized void record(long[] plantIds) {
+        if (mAllChanged) return;
+        if (plantIds == null || mChangedCount + plantIds.length > PlantContract.MAX_CHANGED_IDS) {
+            mAllChanged = true;
+            return;
+        }
+        if (mChangedCount + plantIds.length > mChangedIds.length) {
+            mChangedIds = Arrays.copyOf(mChangedIds,
+                    Math.max(mChangedIds.length * 2, mChangedCount + plantIds.length));
+        }
+        System.arraycopy(plantIds, 0, mChangedIds, mChangedCount, plantIds.length);
+        mChangedCount += plantIds.length;
+    }
+
+    /**
+     * Returns whether a plant may have changed since the last take
+     */
+    public synchronized boolean hasChanged(long plantId) {
+        if (mAllChanged) return true;
+        for (int i = 0; i < mChangedCount; i++) {
+            if (mChangedIds[i] == plantId) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns the changes recorded since the last take and starts recording afresh
+     *
+     * @return The sorted IDs of the changed plants, empty if none changed, or null if every
+     * plant has to be read again
+     */
+    public synchronized long[] takeChangedIds() {
+        long[] plantIds = null;
+        if (!mAllChanged) {
+            plantIds = Arrays.copyOf(mChangedIds, mChangedCount);
+            Arrays.sort(plantIds);
+            // Drop the repeats left by a plant changed more than once
+            int unique = 0;
+            for (int i = 0; i < plantIds.length; i++) {
+                if (i == 0 || plantIds[i] != plantIds[i - 1]) plantIds[unique++] = plantIds[i];
+            }
+            plantIds = Arrays.copyOf(plantIds, unique);
+        }
+        mAllChanged = false;
+        mChangedCount = 0;
+        return plantIds;
+    }
+
+    /**
+     * Makes the next take ask for every plant to be read again, for when a read is thrown away
+     */
+    public synchronized void invalidate() {
+        mAllChanged = true;
+    }
+}
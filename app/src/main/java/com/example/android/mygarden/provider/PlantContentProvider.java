@@ -17,17 +17,28 @@ package com.example.android.mygarden.provider;
 */
 
 import android.content.ContentProvider;
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
 import android.content.ContentUris;
 import android.content.ContentValues;
 import android.content.Context;
+import android.content.OperationApplicationException;
 import android.content.UriMatcher;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
 import android.net.Uri;
 import android.support.annotation.NonNull;
 
+import com.example.android.mygarden.utils.PerfTrace;
+import com.example.android.mygarden.utils.PlantUtils;
+
+import java.io.FileDescriptor;
+import java.io.PrintWriter;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
 
 import static com.example.android.mygarden.provider.PlantContract.PlantEntry;
 
@@ -40,6 +51,7 @@ public class PlantContentProvider extends ContentProvider {
 
     public static final int PLANTS = 100;
     public static final int PLANT_WITH_ID = 101;
+    public static final int PLANT_WATER = 103;
 
     // Declare a static variable for the Uri matcher that you construct
     private static final UriMatcher sUriMatcher = buildUriMatcher();
@@ -52,12 +64,35 @@ public class PlantContentProvider extends ContentProvider {
         // Add URI matches
         uriMatcher.addURI(PlantContract.AUTHORITY, PlantContract.PATH_PLANTS, PLANTS);
         uriMatcher.addURI(PlantContract.AUTHORITY, PlantContract.PATH_PLANTS + "/#", PLANT_WITH_ID);
+        uriMatcher.addURI(PlantContract.AUTHORITY,
+                PlantContract.PATH_PLANTS + "/#/" + PlantContract.PATH_WATER, PLANT_WATER);
         return uriMatcher;
     }
 
+    // Statement compiled once per bulkInsert and re-bound for every row
+    private static final String SQL_INSERT_PLANT = "INSERT INTO " + PlantEntry.TABLE_NAME + " (" +
+            PlantEntry.COLUMN_PLANT_TYPE + ", " +
+            PlantEntry.COLUMN_CREATION_TIME + ", " +
+            PlantEntry.COLUMN_LAST_WATERED_TIME + ") VALUES (?, ?, ?)";
+
+    // Watering is the most frequent write, so its statement is compiled once and kept. Only a
+    // plant that is still alive is watered, as in PlantUtils.
+    private static final String SQL_WATER_PLANT = "UPDATE " + PlantEntry.TABLE_NAME +
+            " SET " + PlantEntry.COLUMN_LAST_WATERED_TIME + "=?" +
+            " WHERE " + PlantEntry._ID + "=?" +
+            " AND " + PlantEntry.COLUMN_LAST_WATERED_TIME + ">?";
+
+    // Compiled on first use, only used from waterPlant as its bindings are shared
+    private SQLiteStatement mWaterPlantStatement;
+
     // Member variable for a PlantDbHelper that's initialized in the onCreate() method
     private PlantDbHelper mPlantDbHelper;
 
+    // Set while applyBatch runs on the calling thread, so that the individual operations
+    // hold back their notifications and a single one listing every plant they changed is sent
+    // once the batch commits
+    private final ThreadLocal<BatchChanges> mBatchChanges = new ThreadLocal<BatchChanges>();
+
     @Override
     public boolean onCreate() {
         Context context = getContext();
@@ -74,6 +109,15 @@ public class PlantContentProvider extends ContentProvider {
      */
     @Override
     public Uri insert(@NonNull Uri uri, ContentValues values) {
+        long start = PerfTrace.begin(PerfTrace.PROVIDER_INSERT);
+        try {
+            return insertPlant(uri, values);
+        } finally {
+            PerfTrace.end(PerfTrace.PROVIDER_INSERT, start);
+        }
+    }
+
+    private Uri insertPlant(Uri uri, ContentValues values) {
         final SQLiteDatabase db = mPlantDbHelper.getWritableDatabase();
 
         // Write URI matching code to identify the match for the plants directory
@@ -94,8 +138,8 @@ public class PlantContentProvider extends ContentProvider {
                 throw new UnsupportedOperationException("Unknown uri: " + uri);
         }
 
-        // Notify the resolver if the uri has been changed, and return the newly inserted URI
-        getContext().getContentResolver().notifyChange(uri, null);
+        // Notify the resolver with the uri of the new row, and return the newly inserted URI
+        notifyChange(returnUri);
 
         // Return constructed uri (this points to the newly inserted row of data)
         return returnUri;
@@ -114,6 +158,16 @@ public class PlantContentProvider extends ContentProvider {
     @Override
     public Cursor query(@NonNull Uri uri, String[] projection, String selection,
                         String[] selectionArgs, String sortOrder) {
+        long start = PerfTrace.begin(PerfTrace.PROVIDER_QUERY);
+        try {
+            return queryPlants(uri, projection, selection, selectionArgs, sortOrder);
+        } finally {
+            PerfTrace.end(PerfTrace.PROVIDER_QUERY, start);
+        }
+    }
+
+    private Cursor queryPlants(Uri uri, String[] projection, String selection,
+                               String[] selectionArgs, String sortOrder) {
 
         // Get access to underlying database (read-only for query)
         final SQLiteDatabase db = mPlantDbHelper.getReadableDatabase();
@@ -131,7 +185,8 @@ public class PlantContentProvider extends ContentProvider {
                         selectionArgs,
                         null,
                         null,
-                        sortOrder);
+                        sortOrder,
+                        getLimit(uri));
                 break;
             case PLANT_WITH_ID:
                 String id = uri.getPathSegments().get(1);
@@ -155,6 +210,18 @@ public class PlantContentProvider extends ContentProvider {
         return retCursor;
     }
 
+    // Builds the LIMIT clause from the paging query parameter, or null to return every row
+    private static String getLimit(Uri uri) {
+        String limit = uri.getQueryParameter(PlantContract.QUERY_PARAMETER_LIMIT);
+        if (limit == null) return null;
+        // Parsed so that only a plain number ends up in the SQL
+        try {
+            return String.valueOf(Integer.parseInt(limit));
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException("Invalid paging parameter: " + uri, ex);
+        }
+    }
+
     /***
      * Deletes a single row of data
      *
@@ -165,6 +232,15 @@ public class PlantContentProvider extends ContentProvider {
      */
     @Override
     public int delete(@NonNull Uri uri, String selection, String[] selectionArgs) {
+        long start = PerfTrace.begin(PerfTrace.PROVIDER_DELETE);
+        try {
+            return deletePlants(uri, selection, selectionArgs);
+        } finally {
+            PerfTrace.end(PerfTrace.PROVIDER_DELETE, start);
+        }
+    }
+
+    private int deletePlants(Uri uri, String selection, String[] selectionArgs) {
         // Get access to the database and write URI matching code to recognize a single item
         final SQLiteDatabase db = mPlantDbHelper.getWritableDatabase();
         int match = sUriMatcher.match(uri);
@@ -181,10 +257,10 @@ public class PlantContentProvider extends ContentProvider {
             default:
                 throw new UnsupportedOperationException("Unknown uri: " + uri);
         }
-        // Notify the resolver of a change and return the number of items deleted
+        // Notify the resolver of a change to the row and return the number of items deleted
         if (plantsDeleted != 0) {
             // A plant (or more) was deleted, set notification
-            getContext().getContentResolver().notifyChange(uri, null);
+            notifyChange(uri);
         }
         // Return the number of plant deleted
         return plantsDeleted;
@@ -201,15 +277,46 @@ public class PlantContentProvider extends ContentProvider {
     @Override
     public int update(@NonNull Uri uri, ContentValues values, String selection,
                       String[] selectionArgs) {
+        long start = PerfTrace.begin(PerfTrace.PROVIDER_UPDATE);
+        try {
+            return updatePlants(uri, values, selection, selectionArgs);
+        } finally {
+            PerfTrace.end(PerfTrace.PROVIDER_UPDATE, start);
+        }
+    }
+
+    private int updatePlants(Uri uri, ContentValues values, String selection,
+                             String[] selectionArgs) {
         // Get access to underlying database
         final SQLiteDatabase db = mPlantDbHelper.getWritableDatabase();
         int match = sUriMatcher.match(uri);
         // Keep track of the number of updated plants
         int plantsUpdated;
+        // The uri to notify, for many rows it lists the updated IDs when there are few enough
+        Uri changedUri = uri;
 
         switch (match) {
             case PLANTS:
-                plantsUpdated = db.update(PlantEntry.TABLE_NAME, values, selection, selectionArgs);
+                db.beginTransaction();
+                try {
+                    long[] plantIds = queryPlantIds(db, selection, selectionArgs);
+                    plantsUpdated = db.update(PlantEntry.TABLE_NAME, values, selection, selectionArgs);
+                    db.setTransactionSuccessful();
+                    changedUri = PlantContract.buildChangedPlantsUri(plantIds);
+                } finally {
+                    db.endTransaction();
+                }
+                break;
+            case PLANT_WATER:
+                // The selection is fixed, the watering time comes from the values or the clock
+                long plantId = Long.parseLong(uri.getPathSegments().get(1));
+                Long wateredAt = values == null ? null
+                        : values.getAsLong(PlantEntry.COLUMN_LAST_WATERED_TIME);
+                plantsUpdated = waterPlant(db, plantId,
+                        wateredAt != null ? wateredAt : System.currentTimeMillis());
+                if (plantsUpdated != 0) {
+                    changedUri = ContentUris.withAppendedId(PlantEntry.CONTENT_URI, plantId);
+                }
                 break;
             case PLANT_WITH_ID:
                 if (selection == null) selection = PlantEntry._ID + "=?";
@@ -234,15 +341,175 @@ public class PlantContentProvider extends ContentProvider {
         // Notify the resolver of a change and return the number of items updated
         if (plantsUpdated != 0) {
             // A place (or more) was updated, set notification
-            getContext().getContentResolver().notifyChange(uri, null);
+            notifyChange(changedUri);
         }
         // Return the number of places deleted
         return plantsUpdated;
     }
 
+    /***
+     * Inserts many rows in a single transaction using one compiled statement
+     *
+     * @param uri
+     * @param values
+     * @return number of rows inserted
+     */
+    @Override
+    public int bulkInsert(@NonNull Uri uri, @NonNull ContentValues[] values) {
+        int match = sUriMatcher.match(uri);
+        if (match != PLANTS) {
+            throw new UnsupportedOperationException("Unknown uri: " + uri);
+        }
+
+        final SQLiteDatabase db = mPlantDbHelper.getWritableDatabase();
+        int plantsInserted = 0;
+        // Room for one ID past MAX_CHANGED_IDS, past that observers reload everything anyway
+        long[] plantIds = new long[Math.min(values.length, PlantContract.MAX_CHANGED_IDS + 1)];
+        db.beginTransaction();
+        SQLiteStatement statement = db.compileStatement(SQL_INSERT_PLANT);
+        try {
+            for (ContentValues plant : values) {
+                statement.clearBindings();
+                bindLong(statement, 1, plant, PlantEntry.COLUMN_PLANT_TYPE);
+                bindLong(statement, 2, plant, PlantEntry.COLUMN_CREATION_TIME);
+                bindLong(statement, 3, plant, PlantEntry.COLUMN_LAST_WATERED_TIME);
+                long id = statement.executeInsert();
+                if (id > 0) {
+                    if (plantsInserted < plantIds.length) plantIds[plantsInserted] = id;
+                    plantsInserted++;
+                }
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            statement.close();
+            db.endTransaction();
+        }
+
+        // One notification for the whole batch
+        if (plantsInserted != 0) {
+            notifyChange(PlantContract.buildChangedPlantsUri(plantsInserted <= PlantContract.MAX_CHANGED_IDS
+                    ? Arrays.copyOf(plantIds, plantsInserted) : null));
+        }
+        return plantsInserted;
+    }
+
+    /***
+     * Applies all operations in a single transaction and notifies observers once at the end,
+     * with the IDs of the plants the batch changed
+     *
+     * @param operations
+     * @return the results of the applied operations
+     * @throws OperationApplicationException
+     */
+    @NonNull
+    @Override
+    public ContentProviderResult[] applyBatch(@NonNull ArrayList<ContentProviderOperation> operations)
+            throws OperationApplicationException {
+        final SQLiteDatabase db = mPlantDbHelper.getWritableDatabase();
+        ContentProviderResult[] results;
+        BatchChanges changes = new BatchChanges();
+        mBatchChanges.set(changes);
+        db.beginTransaction();
+        try {
+            results = super.applyBatch(operations);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+            mBatchChanges.remove();
+        }
+
+        // Only reached when the batch committed
+        if (changes.mChanged) {
+            notifyChange(PlantContract.buildChangedPlantsUri(changes.getPlantIds()));
+        }
+        return results;
+    }
+
+    // Runs the cached watering statement, returning the number of plants watered
+    private synchronized int waterPlant(SQLiteDatabase db, long plantId, long wateredAt) {
+        if (mWaterPlantStatement == null) {
+            mWaterPlantStatement = db.compileStatement(SQL_WATER_PLANT);
+        }
+        mWaterPlantStatement.bindLong(1, wateredAt);
+        mWaterPlantStatement.bindLong(2, plantId);
+        mWaterPlantStatement.bindLong(3, wateredAt - PlantUtils.MAX_AGE_WITHOUT_WATER);
+        return mWaterPlantStatement.executeUpdateDelete();
+    }
+
+    // Returns the IDs of the rows matching the selection, or null if there are too many to list
+    private static long[] queryPlantIds(SQLiteDatabase db, String selection, String[] selectionArgs) {
+        Cursor cursor = db.query(PlantEntry.TABLE_NAME, new String[]{PlantEntry._ID},
+                selection, selectionArgs, null, null, null,
+                String.valueOf(PlantContract.MAX_CHANGED_IDS + 1));
+        try {
+            if (cursor.getCount() > PlantContract.MAX_CHANGED_IDS) return null;
+            long[] plantIds = new long[cursor.getCount()];
+            for (int i = 0; cursor.moveToNext(); i++) {
+                plantIds[i] = cursor.getLong(0);
+            }
+            return plantIds;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    // Notifies observers of a change, or defers it when called from inside applyBatch
+    private void notifyChange(Uri uri) {
+        BatchChanges changes = mBatchChanges.get();
+        if (changes != null) {
+            changes.add(PlantContract.getChangedPlantIds(uri));
+            return;
+        }
+        // The repository cache hears of the change before this write returns
+        PlantRepository.onPlantsChanged(uri);
+        getContext().getContentResolver().notifyChange(uri, null);
+    }
+
+    private static void bindLong(SQLiteStatement statement, int index, ContentValues values, String key) {
+        Long value = values.getAsLong(key);
+        if (value == null) statement.bindNull(index);
+        else statement.bindLong(index, value);
+    }
+
+    // Readable with: adb shell dumpsys activity provider com.example.android.mygarden
+    @Override
+    public void dump(FileDescriptor fd, PrintWriter writer, String[] args) {
+        PerfTrace.getRegistry().dump(writer);
+        PlantRepository repository = PlantRepository.getInstance(getContext());
+        writer.printf("Plant cache: %d hits, %d misses%n",
+                repository.getHitCount(), repository.getMissCount());
+    }
 
     @Override
     public String getType(@NonNull Uri uri) {
         throw new UnsupportedOperationException("Not yet implemented");
     }
+
+    // The plants changed by the operations of one batch, gathered from their change URIs
+    private static class BatchChanges {
+
+        private boolean mChanged;
+        // Null once any plant may have changed, or too many have to list them
+        private Set<Long> mPlantIds = new HashSet<Long>();
+
+        void add(long[] plantIds) {
+            mChanged = true;
+            if (mPlantIds == null) return;
+            if (plantIds == null) {
+                mPlantIds = null;
+                return;
+            }
+            for (long plantId : plantIds) mPlantIds.add(plantId);
+            if (mPlantIds.size() > PlantContract.MAX_CHANGED_IDS) mPlantIds = null;
+        }
+
+        // The IDs for buildChangedPlantsUri, null if any plant may have changed
+        long[] getPlantIds() {
+            if (mPlantIds == null) return null;
+            long[] plantIds = new long[mPlantIds.size()];
+            int i = 0;
+            for (long plantId : mPlantIds) plantIds[i++] = plantId;
+            return plantIds;
+        }
+    }
 }
@@ -16,9 +16,12 @@ package com.example.android.mygarden.provider;
 * limitations under the License.
 */
 
+import android.content.ContentUris;
 import android.net.Uri;
 import android.provider.BaseColumns;
 
+import java.util.List;
+
 public class PlantContract {
 
     // The authority, which is how your code knows which Content Provider to access
@@ -31,6 +34,19 @@ public class PlantContract {
     // This is the path for the "plants" directory
     public static final String PATH_PLANTS = "plants";
 
+    // This is the path to water a single plant, under "plants/#"
+    public static final String PATH_WATER = "water";
+
+    // Query parameter to read the "plants" directory one page at a time
+    public static final String QUERY_PARAMETER_LIMIT = "limit";
+
+    // Query parameter listing the IDs of the plants changed by a multi-row write, set on the
+    // "plants" URI that the provider notifies observers with
+    public static final String QUERY_PARAMETER_CHANGED_IDS = "changed";
+
+    // Writes touching more plants than this notify the plain "plants" URI, meaning "reload all"
+    public static final int MAX_CHANGED_IDS = 200;
+
     public static final long INVALID_PLANT_ID = -1;
 
     public static final class PlantEntry implements BaseColumns {
@@ -44,4 +60,80 @@ public class PlantContract {
         public static final String COLUMN_CREATION_TIME = "createdAt";
         public static final String COLUMN_LAST_WATERED_TIME = "lastWateredAt";
     }
+
+    /**
+     * Builds the URI to water a single plant through. An update on it sets the watering time,
+     * taken from the values or the current time if there are none, as long as the plant is alive.
+     *
+     * @param plantId The ID of the plant to water
+     * @return The watering URI of the plant
+     */
+    public static Uri buildWaterPlantUri(long plantId) {
+        return ContentUris.withAppendedId(PlantEntry.CONTENT_URI, plantId).buildUpon()
+                .appendPath(PATH_WATER)
+                .build();
+    }
+
+    /**
+     * Builds a plants directory URI that returns at most limit rows. Later pages are read by
+     * selecting the rows after the last one read, rather than by skipping rows.
+     *
+     * @param limit The maximum number of rows to return
+     * @return The paged plants URI
+     */
+    public static Uri buildPlantsPageUri(int limit) {
+        return PlantEntry.CONTENT_URI.buildUpon()
+                .appendQueryParameter(QUERY_PARAMETER_LIMIT, String.valueOf(limit))
+                .build();
+    }
+
+    /**
+     * Builds the URI notified for a write that changed the given plants
+     *
+     * @param plantIds The IDs of the plants inserted, updated or deleted, or null if not known
+     * @return The URI of the single plant, a "plants" URI listing the IDs, or the plain "plants"
+     * URI if the IDs are not known or there are more than MAX_CHANGED_IDS of them
+     */
+    public static Uri buildChangedPlantsUri(long[] plantIds) {
+        if (plantIds == null || plantIds.length > MAX_CHANGED_IDS) return PlantEntry.CONTENT_URI;
+        if (plantIds.length == 1) return ContentUris.withAppendedId(PlantEntry.CONTENT_URI, plantIds[0]);
+        StringBuilder ids = new StringBuilder();
+        for (int i = 0; i < plantIds.length; i++) {
+            if (i > 0) ids.append(',');
+            ids.append(plantIds[i]);
+        }
+        return PlantEntry.CONTENT_URI.buildUpon()
+                .appendQueryParameter(QUERY_PARAMETER_CHANGED_IDS, ids.toString())
+                .build();
+    }
+
+    /**
+     * Reads back the plant IDs from a notified change URI
+     *
+     * @param uri A URI passed to a ContentObserver, may be null
+     * @return The IDs of the changed plants, or null if any plant may have changed
+     */
+    public static long[] getChangedPlantIds(Uri uri) {
+        if (uri == null) return null;
+        List<String> segments = uri.getPathSegments();
+        if (segments.size() == 2 && PATH_PLANTS.equals(segments.get(0))) {
+            try {
+                return new long[]{ContentUris.parseId(uri)};
+            } catch (NumberFormatException ex) {
+                return null;
+            }
+        }
+        String ids = uri.getQueryParameter(QUERY_PARAMETER_CHANGED_IDS);
+        if (ids == null || ids.isEmpty()) return null;
+        String[] parts = ids.split(",");
+        long[] plantIds = new long[parts.length];
+        try {
+            for (int i = 0; i < parts.length; i++) {
+                plantIds[i] = Long.parseLong(parts[i]);
+            }
+        } catch (NumberFormatException ex) {
+            return null;
+        }
+        return plantIds;
+    }
 }
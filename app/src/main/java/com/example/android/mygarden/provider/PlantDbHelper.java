@@ -16,9 +16,11 @@ package com.example.android.mygarden.provider;
 * limitations under the License.
 */
 
+import android.annotation.TargetApi;
 import android.content.Context;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.os.Build;
 
 import com.example.android.mygarden.provider.PlantContract.PlantEntry;
 
@@ -28,11 +30,50 @@ public class PlantDbHelper extends SQLiteOpenHelper {
     private static final String DATABASE_NAME = "shushme.db";
 
     // If you change the database schema, you must increment the database version
-    private static final int DATABASE_VERSION = 1;
+    // Version 2 adds indexes on the watering and creation times
+    private static final int DATABASE_VERSION = 2;
+
+    static final String INDEX_LAST_WATERED_TIME = "index_plants_lastWateredAt";
+    static final String INDEX_CREATION_TIME = "index_plants_createdAt";
 
     // Constructor
     public PlantDbHelper(Context context) {
-        super(context, DATABASE_NAME, null, DATABASE_VERSION);
+        this(context, DATABASE_NAME);
+    }
+
+    // Opens a database under another name, so that tests leave the real garden alone
+    PlantDbHelper(Context context, String databaseName) {
+        super(context, databaseName, null, DATABASE_VERSION);
+        // Write-ahead logging lets the widget, the loaders and the grid factory keep reading
+        // while the watering service writes, instead of waiting on the rollback journal lock
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+            setWriteAheadLoggingEnabled(true);
+        }
+    }
+
+    // Only runs against the primary connection, the pooled read-only connections that WAL opens
+    // for concurrent readers never see it. That is enough for the synchronous mode, which only
+    // affects writes.
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    @Override
+    public void onConfigure(SQLiteDatabase sqLiteDatabase) {
+        super.onConfigure(sqLiteDatabase);
+        configureWriter(sqLiteDatabase);
+    }
+
+    @Override
+    public void onOpen(SQLiteDatabase sqLiteDatabase) {
+        super.onOpen(sqLiteDatabase);
+        // onConfigure is not called before Jelly Bean, so set things up once the database is open
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN) {
+            sqLiteDatabase.enableWriteAheadLogging();
+            configureWriter(sqLiteDatabase);
+        }
+    }
+
+    // With WAL a NORMAL sync only risks the last commits on power loss, never corruption
+    private static void configureWriter(SQLiteDatabase sqLiteDatabase) {
+        sqLiteDatabase.execSQL("PRAGMA synchronous = NORMAL");
     }
 
     @Override
@@ -46,12 +87,23 @@ public class PlantDbHelper extends SQLiteOpenHelper {
                 PlantEntry.COLUMN_LAST_WATERED_TIME + " TIMESTAMP NOT NULL)";
 
         sqLiteDatabase.execSQL(SQL_CREATE_PLANTS_TABLE);
+        createTimeIndexes(sqLiteDatabase);
     }
 
     @Override
-    public void onUpgrade(SQLiteDatabase sqLiteDatabase, int i, int i1) {
-        // For now simply drop the table and create a new one.
-        sqLiteDatabase.execSQL("DROP TABLE IF EXISTS " + PlantEntry.TABLE_NAME);
-        onCreate(sqLiteDatabase);
+    public void onUpgrade(SQLiteDatabase sqLiteDatabase, int oldVersion, int newVersion) {
+        // Step through each version in turn so existing gardens are kept
+        switch (oldVersion) {
+            case 1:
+                createTimeIndexes(sqLiteDatabase);
+        }
+    }
+
+    // Batch watering selects plants by watering time and the lists page by creation time
+    private static void createTimeIndexes(SQLiteDatabase sqLiteDatabase) {
+        sqLiteDatabase.execSQL("CREATE INDEX IF NOT EXISTS " + INDEX_LAST_WATERED_TIME +
+                " ON " + PlantEntry.TABLE_NAME + " (" + PlantEntry.COLUMN_LAST_WATERED_TIME + ")");
+        sqLiteDatabase.execSQL("CREATE INDEX IF NOT EXISTS " + INDEX_CREATION_TIME +
+                " ON " + PlantEntry.TABLE_NAME + " (" + PlantEntry.COLUMN_CREATION_TIME + ")");
     }
 }
@@ -0,0 +1,271 @@
+package com.example.android.mygarden.provider;
+
+/*
+* Copyright (C) 2017 The Android Open Source Project
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*  	http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+import android.content.ContentResolver;
+import android.database.Cursor;
+
+import com.example.android.mygarden.core.GardenSort;
+import com.example.android.mygarden.core.GardenState;
+import com.example.android.mygarden.core.GardenStateEngine;
+import com.example.android.mygarden.provider.PlantContract.PlantEntry;
+
+import java.util.Arrays;
+
+/**
+ * An immutable copy of the plant rows of a cursor. Each column is decoded once into its own
+ * primitive array, so binding a row is a plain array read with no cursor seeks or column lookups,
+ * and the record stays usable after the cursor is closed.
+ */
+public final class PlantRecord {
+
+    // The columns a record is decoded from, pass this as the query projection
+    public static final String[] PROJECTION = {
+            PlantEntry._ID,
+            PlantEntry.COLUMN_PLANT_TYPE,
+            PlantEntry.COLUMN_CREATION_TIME,
+            PlantEntry.COLUMN_LAST_WATERED_TIME
+    };
+
+    // The order records are kept in, by creation time with the ID to break ties
+    public static final String SORT_ORDER =
+            PlantEntry.COLUMN_CREATION_TIME + ", " + PlantEntry._ID;
+
+    public static final PlantRecord EMPTY = new PlantRecord(0);
+
+    private final long[] mIds;
+    private final int[] mTypes;
+    private final long[] mCreatedAt;
+    private final long[] mWateredAt;
+
+    private PlantRecord(int count) {
+        mIds = new long[count];
+        mTypes = new int[count];
+        mCreatedAt = new long[count];
+        mWateredAt = new long[count];
+    }
+
+    /**
+     * Decodes every row of the cursor. The cursor position is moved but the cursor is not closed.
+     *
+     * @param cursor A cursor holding at least the PROJECTION columns, may be null
+     * @return The decoded rows, or EMPTY if the cursor is null or has no rows
+     */
+    public static PlantRecord from(Cursor cursor) {
+        if (cursor == null || cursor.getCount() == 0) return EMPTY;
+
+        // Column indexes are looked up once per cursor rather than once per row
+        int idIndex = cursor.getColumnIndex(PlantEntry._ID);
+        int plantTypeIndex = cursor.getColumnIndex(PlantEntry.COLUMN_PLANT_TYPE);
+        int createTimeIndex = cursor.getColumnIndex(PlantEntry.COLUMN_CREATION_TIME);
+        int waterTimeIndex = cursor.getColumnIndex(PlantEntry.COLUMN_LAST_WATERED_TIME);
+
+        PlantRecord record = new PlantRecord(cursor.getCount());
+        for (int i = 0; cursor.moveToPosition(i); i++) {
+            record.mIds[i] = cursor.getLong(idIndex);
+            record.mTypes[i] = cursor.getInt(plantTypeIndex);
+            record.mCreatedAt[i] = cursor.getLong(createTimeIndex);
+            record.mWateredAt[i] = cursor.getLong(waterTimeIndex);
+        }
+        return record;
+    }
+
+    // A record of a single plant
+    static PlantRecord of(long plantId, int plantType, long createdAt, long wateredAt) {
+        PlantRecord record = new PlantRecord(1);
+        record.mIds[0] = plantId;
+        record.mTypes[0] = plantType;
+        record.mCreatedAt[0] = createdAt;
+        record.mWateredAt[0] = wateredAt;
+        return record;
+    }
+
+    /**
+     * Reads back only the given plants, the ones that no longer exist are left out
+     *
+     * @param resolver The resolver to query
+     * @param plantIds The IDs of the plants to read, at most PlantContract.MAX_CHANGED_IDS
+     * @return The plants still in the database, in SORT_ORDER
+     */
+    public static PlantRecord queryPlants(ContentResolver resolver, long[] plantIds) {
+        if (plantIds.length == 0) return EMPTY;
+
+        StringBuilder selection = new StringBuilder(PlantEntry._ID).append(" IN (");
+        String[] selectionArgs = new String[plantIds.length];
+        for (int i = 0; i < plantIds.length; i++) {
+            selection.append(i == 0 ? "?" : ",?");
+            selectionArgs[i] = String.valueOf(plantIds[i]);
+        }
+        selection.append(')');
+
+        Cursor cursor = resolver.query(PlantEntry.CONTENT_URI, PROJECTION,
+                selection.toString(), selectionArgs, SORT_ORDER);
+        try {
+            return from(cursor);
+        } finally {
+            if (cursor != null) cursor.close();
+        }
+    }
+
+    /**
+     * Reads the page of plants that follows a record in SORT_ORDER, seeking past its last plant
+     * through the createdAt index so the plants already read are not read again
+     *
+     * @param resolver The resolver to query
+     * @param plants   The plants read so far, in SORT_ORDER
+     * @param limit    The most plants to read
+     * @return The next plants, in SORT_ORDER
+     */
+    public static PlantRecord queryPageAfter(ContentResolver resolver, PlantRecord plants, int limit) {
+        String selection = null;
+        String[] selectionArgs = null;
+        int last = plants.size() - 1;
+        if (last >= 0) {
+            // The OR alone makes SQLite scan the index from the start, the leading range is what
+            // lets it seek
+            selection = PlantEntry.COLUMN_CREATION_TIME + ">=? AND ("
+                    + PlantEntry.COLUMN_CREATION_TIME + ">? OR ("
+                    + PlantEntry.COLUMN_CREATION_TIME + "=? AND " + PlantEntry._ID + ">?))";
+            String createdAt = String.valueOf(plants.mCreatedAt[last]);
+            selectionArgs = new String[]{createdAt, createdAt, createdAt,
+                    String.valueOf(plants.mIds[last])};
+        }
+
+        Cursor cursor = resolver.query(PlantContract.buildPlantsPageUri(limit), PROJECTION,
+                selection, selectionArgs, SORT_ORDER);
+        try {
+            return from(cursor);
+        } finally {
+            if (cursor != null) cursor.close();
+        }
+    }
+
+    /**
+     * @return The plants of the first record followed by those of the second
+     */
+    public static PlantRecord concat(PlantRecord first, PlantRecord second) {
+        if (second.size() == 0) return first;
+        if (first.size() == 0) return second;
+        PlantRecord record = new PlantRecord(first.size() + second.size());
+        for (int i = 0; i < first.size(); i++) record.copyFrom(i, first, i);
+        for (int i = 0; i < second.size(); i++) record.copyFrom(first.size() + i, second, i);
+        return record;
+    }
+
+    /**
+     * Applies a change to a record without reading the unchanged plants again. The rows of the
+     * changed plants are dropped from the base and their new rows, if any, merged back in order.
+     *
+     * @param base       A record in SORT_ORDER
+     * @param changedIds The IDs of every plant inserted, updated or deleted
+     * @param changed    The current rows of the changed plants that still exist, in SORT_ORDER
+     * @param limit      The most rows to keep, or 0 to keep them all
+     * @return The updated record, in SORT_ORDER
+     */
+    public static PlantRecord merge(PlantRecord base, long[] changedIds, PlantRecord changed, int limit) {
+        long[] removedIds = changedIds.clone();
+        Arrays.sort(removedIds);
+
+        int count = changed.size();
+        for (int i = 0; i < base.size(); i++) {
+            if (Arrays.binarySearch(removedIds, base.mIds[i]) < 0) count++;
+        }
+        if (limit > 0 && count > limit) count = limit;
+
+        PlantRecord merged = new PlantRecord(count);
+        int b = 0;
+        int c = 0;
+        for (int i = 0; i < count; i++) {
+            while (b < base.size() && Arrays.binarySearch(removedIds, base.mIds[b]) >= 0) b++;
+            boolean fromBase = b < base.size()
+                    && (c >= changed.size() || base.compareTo(b, changed, c) < 0);
+            if (fromBase) merged.copyFrom(i, base, b++);
+            else merged.copyFrom(i, changed, c++);
+        }
+        return merged;
+    }
+
+    private int compareTo(int position, PlantRecord other, int otherPosition) {
+        return GardenSort.compareByCreation(mCreatedAt[position], mIds[position],
+                other.mCreatedAt[otherPosition], other.mIds[otherPosition]);
+    }
+
+    private void copyFrom(int position, PlantRecord other, int otherPosition) {
+        mIds[position] = other.mIds[otherPosition];
+        mTypes[position] = other.mTypes[otherPosition];
+        mCreatedAt[position] = other.mCreatedAt[otherPosition];
+        mWateredAt[position] = other.mWateredAt[otherPosition];
+    }
+
+    /**
+     * @return The number of plants in the record
+     */
+    public int size() {
+        return mIds.length;
+    }
+
+    public long getId(int position) {
+        return mIds[position];
+    }
+
+    public int getType(int position) {
+        return mTypes[position];
+    }
+
+    public long getCreatedAt(int position) {
+        return mCreatedAt[position];
+    }
+
+    public long getWateredAt(int position) {
+        return mWateredAt[position];
+    }
+
+    /**
+     * Works out the state of every plant in one pass on the calling thread, never forking, so
+     * that it is safe to call from the UI thread
+     *
+     * @param timeNow The current time in milliseconds
+     * @return The state of each plant by position, and of the record as a whole
+     */
+    public GardenState classify(long timeNow) {
+        return GardenStateEngine.classifySequential(mCreatedAt, mWateredAt, mTypes, timeNow);
+    }
+
+    /**
+     * Returns the position of the plant with the given ID
+     *
+     * @param plantId The plant ID
+     * @return The position, or -1 if the plant is not in the record
+     */
+    public int indexOfId(long plantId) {
+        for (int i = 0; i < mIds.length; i++) {
+            if (mIds[i] == plantId) return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Compares one row of this record with one row of another
+     *
+     * @return true if both rows hold the same type and times
+     */
+    public boolean sameContents(int position, PlantRecord other, int otherPosition) {
+        return mTypes[position] == other.mTypes[otherPosition]
+                && mCreatedAt[position] == other.mCreatedAt[otherPosition]
+                && mWateredAt[position] == other.mWateredAt[otherPosition];
+    }
+}
@@ -0,0 +1,306 @@
+package com.example.android.mygarden.provider;
+
+/*
+* Copyright (C) 2017 The Android Open Source Project
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*  	http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.net.Uri;
+import android.support.annotation.WorkerThread;
+import android.support.v4.util.LongSparseArray;
+
+import com.example.android.mygarden.provider.PlantContract.PlantEntry;
+import com.example.android.mygarden.service.PlantWateringService;
+import com.example.android.mygarden.utils.PlantUtils;
+
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Process-wide entry point for changes to the garden made from the UI. Writes are queued on a
+ * single background thread, so they never touch the disk on the UI thread and are applied in
+ * the order they were made. Screens can finish straight away and let their loaders pick up
+ * the change once it lands.
+ * <p>
+ * It also keeps every plant in memory for the widgets: a map by plant ID, a min-heap by
+ * watering time for the neediest plant and a record sorted by creation time. The provider
+ * reports each write with the IDs it touched, and only those plants are read again on the
+ * next read.
+ */
+public final class PlantRepository {
+
+    private static PlantRepository sInstance;
+
+    private final Context mContext;
+
+    // A single writer keeps the writes in order without any locking
+    private final ExecutorService mWriteExecutor = Executors.newSingleThreadExecutor();
+
+    // The plants written since the last read, reported by the provider
+    private final PlantChangeObserver mChanges = new PlantChangeObserver(null, null);
+
+    // Every plant in PlantRecord.SORT_ORDER, null until first read
+    private PlantRecord mPlants;
+    private final LongSparseArray<CachedPlant> mPlantsById = new LongSparseArray<CachedPlant>();
+    // Living plants, least recently watered first
+    private CachedPlant[] mThirstHeap = new CachedPlant[16];
+    private int mThirstHeapSize;
+
+    // Reads answered from memory, and reads that had to query the provider first
+    private final AtomicLong mHits = new AtomicLong();
+    private final AtomicLong mMisses = new AtomicLong();
+
+    private PlantRepository(Context context) {
+        mContext = context.getApplicationContext();
+    }
+
+    public static synchronized PlantRepository getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new PlantRepository(context);
+        }
+        return sInstance;
+    }
+
+    /**
+     * Queues a new plant to be planted, created and watered at the given time
+     *
+     * @param plantType The plant type (starts from 0 and corresponds to the index to the item in arrays.xml)
+     * @param timeNow   The creation and watering time in milliseconds
+     */
+    public void addPlant(final int plantType, final long timeNow) {
+        mWriteExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                ContentValues contentValues = new ContentValues();
+                contentValues.put(PlantEntry.COLUMN_PLANT_TYPE, plantType);
+                contentValues.put(PlantEntry.COLUMN_CREATION_TIME, timeNow);
+                contentValues.put(PlantEntry.COLUMN_LAST_WATERED_TIME, timeNow);
+                mContext.getContentResolver().insert(PlantEntry.CONTENT_URI, contentValues);
+
+                // Call to update the widgets - Add new plant
+                PlantWateringService.startActionUpdatePlantWidgets(mContext);
+            }
+        });
+    }
+
+    /**
+     * Queues a plant to be removed from the garden
+     *
+     * @param plantId The ID of the plant to remove
+     */
+    public void deletePlant(final long plantId) {
+        mWriteExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                Uri singlePlantUri = ContentUris.withAppendedId(PlantEntry.CONTENT_URI, plantId);
+                int plantsDeleted = mContext.getContentResolver().delete(singlePlantUri, null, null);
+
+                // Call to update the widgets - Remove a plant
+                if (plantsDeleted > 0) PlantWateringService.startActionUpdatePlantWidgets(mContext);
+            }
+        });
+    }
+
+    // Called by the provider for each change it notifies, on the thread of the write
+    static void onPlantsChanged(Uri uri) {
+        PlantRepository repository;
+        synchronized (PlantRepository.class) {
+            repository = sInstance;
+        }
+        if (repository != null) repository.mChanges.onChange(false, uri);
+    }
+
+    /**
+     * Returns every plant sorted by creation time. The same instance is returned for as long
+     * as no plant changes.
+     *
+     * @return The plants in PlantRecord.SORT_ORDER
+     */
+    @WorkerThread
+    public synchronized PlantRecord getPlants() {
+        refresh();
+        return mPlants;
+    }
+
+    /**
+     * Returns the living plant that was watered the longest time ago
+     *
+     * @param timeNow The current time in milliseconds
+     * @return A record of that plant, or PlantRecord.EMPTY if every plant is dead or there are none
+     */
+    @WorkerThread
+    public synchronized PlantRecord getNeediestPlant(long timeNow) {
+        refresh();
+
+        // A dead plant can not be watered again, so it can leave the heap for good
+        long diedBefore = timeNow - PlantUtils.MAX_AGE_WITHOUT_WATER;
+        while (mThirstHeapSize > 0 && mThirstHeap[0].wateredAt <= diedBefore) {
+            removeFromHeap(mThirstHeap[0]);
+        }
+        if (mThirstHeapSize == 0) return PlantRecord.EMPTY;
+
+        CachedPlant plant = mThirstHeap[0];
+        return PlantRecord.of(plant.id, plant.type, plant.createdAt, plant.wateredAt);
+    }
+
+    /**
+     * Returns a single plant
+     *
+     * @param plantId The ID of the plant
+     * @return A record of that plant, or PlantRecord.EMPTY if there is no such plant
+     */
+    @WorkerThread
+    public synchronized PlantRecord getPlant(long plantId) {
+        refresh();
+        CachedPlant plant = mPlantsById.get(plantId);
+        if (plant == null) return PlantRecord.EMPTY;
+        return PlantRecord.of(plant.id, plant.type, plant.createdAt, plant.wateredAt);
+    }
+
+    public long getHitCount() {
+        return mHits.get();
+    }
+
+    public long getMissCount() {
+        return mMisses.get();
+    }
+
+    /**
+     * @return The share of reads answered without querying the provider, 0 before any read
+     */
+    public float getHitRate() {
+        long hits = mHits.get();
+        long reads = hits + mMisses.get();
+        return reads == 0 ? 0f : (float) hits / reads;
+    }
+
+    // Brings the cache up to date, reading only the plants changed since the last read
+    private void refresh() {
+        long[] changedIds = mChanges.takeChangedIds();
+        if (changedIds != null && changedIds.length == 0 && mPlants != null) {
+            mHits.incrementAndGet();
+            return;
+        }
+        mMisses.incrementAndGet();
+
+        if (changedIds == null || mPlants == null) {
+            Cursor cursor = mContext.getContentResolver().query(PlantEntry.CONTENT_URI,
+                    PlantRecord.PROJECTION, null, null, PlantRecord.SORT_ORDER);
+            try {
+                mPlants = PlantRecord.from(cursor);
+            } finally {
+                if (cursor != null) cursor.close();
+            }
+            mPlantsById.clear();
+            Arrays.fill(mThirstHeap, 0, mThirstHeapSize, null);
+            mThirstHeapSize = 0;
+            for (int i = 0; i < mPlants.size(); i++) {
+                addPlant(mPlants, i);
+            }
+            return;
+        }
+
+        PlantRecord changed = PlantRecord.queryPlants(mContext.getContentResolver(), changedIds);
+        mPlants = PlantRecord.merge(mPlants, changedIds, changed, 0);
+        for (long plantId : changedIds) {
+            CachedPlant plant = mPlantsById.get(plantId);
+            if (plant == null) continue;
+            mPlantsById.remove(plantId);
+            if (plant.heapIndex >= 0) removeFromHeap(plant);
+        }
+        for (int i = 0; i < changed.size(); i++) {
+            addPlant(changed, i);
+        }
+    }
+
+    private void addPlant(PlantRecord plants, int position) {
+        CachedPlant plant = new CachedPlant(plants.getId(position), plants.getType(position),
+                plants.getCreatedAt(position), plants.getWateredAt(position));
+        mPlantsById.put(plant.id, plant);
+
+        if (mThirstHeapSize == mThirstHeap.length) {
+            mThirstHeap = Arrays.copyOf(mThirstHeap, mThirstHeapSize * 2);
+        }
+        plant.heapIndex = mThirstHeapSize++;
+        mThirstHeap[plant.heapIndex] = plant;
+        siftUp(plant.heapIndex);
+    }
+
+    private void removeFromHeap(CachedPlant plant) {
+        int index = plant.heapIndex;
+        CachedPlant last = mThirstHeap[--mThirstHeapSize];
+        mThirstHeap[mThirstHeapSize] = null;
+        plant.heapIndex = -1;
+        if (last == plant) return;
+
+        mThirstHeap[index] = last;
+        last.heapIndex = index;
+        siftDown(index);
+        siftUp(last.heapIndex);
+    }
+
+    private void siftUp(int index) {
+        CachedPlant plant = mThirstHeap[index];
+        while (index > 0) {
+            int parent = (index - 1) / 2;
+            if (mThirstHeap[parent].wateredAt <= plant.wateredAt) break;
+            moveInHeap(mThirstHeap[parent], index);
+            index = parent;
+        }
+        moveInHeap(plant, index);
+    }
+
+    private void siftDown(int index) {
+        CachedPlant plant = mThirstHeap[index];
+        while (true) {
+            int child = 2 * index + 1;
+            if (child >= mThirstHeapSize) break;
+            if (child + 1 < mThirstHeapSize
+                    && mThirstHeap[child + 1].wateredAt < mThirstHeap[child].wateredAt) {
+                child++;
+            }
+            if (plant.wateredAt <= mThirstHeap[child].wateredAt) break;
+            moveInHeap(mThirstHeap[child], index);
+            index = child;
+        }
+        moveInHeap(plant, index);
+    }
+
+    private void moveInHeap(CachedPlant plant, int index) {
+        mThirstHeap[index] = plant;
+        plant.heapIndex = index;
+    }
+
+    // The cached values of one plant, with its place in the thirst heap or -1 once it has left
+    private static final class CachedPlant {
+        final long id;
+        final int type;
+        final long createdAt;
+        final long wateredAt;
+        int heapIndex = -1;
+
+        CachedPlant(long id, int type, long createdAt, long wateredAt) {
+            this.id = id;
+            this.type = type;
+            this.createdAt = createdAt;
+            this.wateredAt = wateredAt;
+        }
+    }
+}
@@ -2,21 +2,19 @@ package com.example.android.mygarden.service;
 
 import android.content.Context;
 import android.content.Intent;
-import android.database.Cursor;
-import android.net.Uri;
 import android.os.Bundle;
+import android.support.v4.util.LongSparseArray;
 import android.view.View;
 import android.widget.RemoteViews;
 import android.widget.RemoteViewsService;
 
 import com.example.android.mygarden.R;
-import com.example.android.mygarden.provider.PlantContract;
+import com.example.android.mygarden.provider.PlantRecord;
+import com.example.android.mygarden.provider.PlantRepository;
 import com.example.android.mygarden.ui.PlantDetailActivity;
+import com.example.android.mygarden.utils.PerfTrace;
 import com.example.android.mygarden.utils.PlantUtils;
 
-import static com.example.android.mygarden.provider.PlantContract.BASE_CONTENT_URI;
-import static com.example.android.mygarden.provider.PlantContract.PATH_PLANTS;
-
 /**
  * Created by J on 11/07/2017.
  */
@@ -24,7 +22,10 @@ import static com.example.android.mygarden.provider.PlantContract.PATH_PLANTS;
 class GridRemoteViewsFactory implements RemoteViewsService.RemoteViewsFactory {
 
     private Context mContext;   // To access the content resolver
-    private Cursor mCursor;     // To obtain plant data from database
+    private PlantRecord mPlants = PlantRecord.EMPTY;    // Plant data decoded from the database
+
+    // RemoteViews already built for each plant ID, reused while the plant's image stays the same
+    private LongSparseArray<CachedViews> mViewsCache = new LongSparseArray<CachedViews>();
 
     GridRemoteViewsFactory(Context applicationContext) {
         mContext = applicationContext;
@@ -38,69 +39,91 @@ class GridRemoteViewsFactory implements RemoteViewsService.RemoteViewsFactory {
 
     @Override
     public void onDataSetChanged() {
-        // Get all plant info ordered by creation time
-        Uri PLANT_URI = BASE_CONTENT_URI.buildUpon().appendPath(PATH_PLANTS).build();
+        long start = PerfTrace.begin(PerfTrace.FACTORY_DATA_SET_CHANGED);
+        try {
+            loadPlants();
+        } finally {
+            PerfTrace.end(PerfTrace.FACTORY_DATA_SET_CHANGED, start);
+        }
+    }
 
-        // close the previous cursor obtained if it is not null
+    private void loadPlants() {
+        // Get all plant info ordered by creation time - served from the in-memory garden, which
+        // hands back the same record for as long as no plant has changed
 
-        if (mCursor != null) mCursor.close();
+        PlantRecord plants = PlantRepository.getInstance(mContext).getPlants();
+        if (plants == mPlants) return;
+        mPlants = plants;
 
-        // execute query to obtain plants in database and order by creation time
+        // keep the cached views of plants that are still in the garden, drop the rest
 
-        mCursor = mContext.getContentResolver().query(
-                PLANT_URI,
-                null,
-                null,
-                null,
-                PlantContract.PlantEntry.COLUMN_CREATION_TIME
-        );
+        LongSparseArray<CachedViews> viewsCache = new LongSparseArray<CachedViews>(mPlants.size());
+        for (int i = 0; i < mPlants.size(); i++) {
+            long plantId = mPlants.getId(i);
+            CachedViews cached = mViewsCache.get(plantId);
+            if (cached != null) viewsCache.put(plantId, cached);
+        }
+        mViewsCache = viewsCache;
     }
 
-    // Close the cursor when destroyed
-
     @Override
     public void onDestroy() {
-        mCursor.close();
+        mPlants = PlantRecord.EMPTY;
+        mViewsCache.clear();
     }
 
     // Return the number of items
 
     @Override
     public int getCount() {
-        return (mCursor == null) ? 0 : mCursor.getCount();
+        return mPlants.size();
     }
 
     @Override
     public RemoteViews getViewAt(int position) {
+        long start = PerfTrace.begin(PerfTrace.FACTORY_GET_VIEW_AT);
+        try {
+            return getPlantViewsAt(position);
+        } finally {
+            PerfTrace.end(PerfTrace.FACTORY_GET_VIEW_AT, start);
+        }
+    }
 
-        // Return null if nothing in cursor
+    private RemoteViews getPlantViewsAt(int position) {
 
-        if (mCursor == null || mCursor.getCount() == 0) return null;
+        // Return null if there are no plants
 
-        // Move to the appropriate item in Cursor that position is pointing to
+        if (mPlants.size() == 0) return null;
 
-        mCursor.moveToPosition(position);
+        // Retrieve the values of the plant that position is pointing to
+        long plantId = mPlants.getId(position);
+        int plantType = mPlants.getType(position);
+        long createdAt = mPlants.getCreatedAt(position);
+        long wateredAt = mPlants.getWateredAt(position);
+        long timeNow = System.currentTimeMillis();
 
-        // Column Indexes
-        int idIndex = mCursor.getColumnIndex(PlantContract.PlantEntry._ID);
-        int createTimeIndex = mCursor.getColumnIndex(PlantContract.PlantEntry.COLUMN_CREATION_TIME);
-        int waterTimeIndex = mCursor.getColumnIndex(PlantContract.PlantEntry.COLUMN_LAST_WATERED_TIME);
-        int plantTypeIndex = mCursor.getColumnIndex(PlantContract.PlantEntry.COLUMN_PLANT_TYPE);
+        // Update the plant image
+        int imgRes = PlantUtils.getPlantImageRes(mContext, timeNow-createdAt, timeNow-wateredAt, plantType);
 
-        // Retrieve column values from indexes
-        long plantId = mCursor.getLong(idIndex);
-        int plantType = mCursor.getInt(plantTypeIndex);
-        long createdAt = mCursor.getLong(createTimeIndex);
-        long wateredAt = mCursor.getLong(waterTimeIndex);
-        long timeNow = System.currentTimeMillis();
+        // Reuse the views built for this plant unless its image has changed since
+
+        CachedViews cached = mViewsCache.get(plantId);
+        if (cached == null || cached.imgRes != imgRes) {
+            cached = new CachedViews(imgRes, buildPlantViews(plantId, imgRes));
+            mViewsCache.put(plantId, cached);
+        }
+
+        // Return the RemoteViews object
+
+        return cached.views;
+    }
+
+    private RemoteViews buildPlantViews(long plantId, int imgRes) {
 
         // Create the remote views object to return
 
         RemoteViews views = new RemoteViews(mContext.getPackageName(), R.layout.plant_widget_provider);
 
-        // Update the plant image
-        int imgRes = PlantUtils.getPlantImageRes(mContext, timeNow-createdAt, timeNow-wateredAt, plantType);
-
         views.setImageViewResource(R.id.widget_plant_image,imgRes);             // set the plan image
         views.setTextViewText(R.id.widget_plant_name,String.valueOf(plantId));  // set the plants ID
 
@@ -118,8 +141,6 @@ class GridRemoteViewsFactory implements RemoteViewsService.RemoteViewsFactory {
 
         views.setOnClickFillInIntent(R.id.widget_plant_image, fillInIntent);
 
-        // Return the RemoteViews object
-
         return views;
     }
 
@@ -133,13 +154,27 @@ class GridRemoteViewsFactory implements RemoteViewsService.RemoteViewsFactory {
         return 1;
     }
 
+    // Plant IDs stay with the plant across refreshes, so the launcher can reuse its views
+
     @Override
     public long getItemId(int position) {
-        return position;
+        return mPlants.getId(position);
     }
 
     @Override
     public boolean hasStableIds() {
         return true;
     }
+
+    // The views built for a plant together with the image they show
+
+    private static class CachedViews {
+        final int imgRes;
+        final RemoteViews views;
+
+        CachedViews(int imgRes, RemoteViews views) {
+            this.imgRes = imgRes;
+            this.views = views;
+        }
+    }
 }
@@ -0,0 +1,163 @@
+package com.example.android.mygarden.service;
+
+import android.annotation.TargetApi;
+import android.app.job.JobInfo;
+import android.app.job.JobParameters;
+import android.app.job.JobScheduler;
+import android.app.job.JobService;
+import android.content.ComponentName;
+import android.content.Context;
+import android.os.Build;
+import android.os.PersistableBundle;
+
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Runs the watering service actions as persisted jobs from Lollipop onwards.
+ *
+ * Watering is scheduled to run straight away, and watering requests made while one is still
+ * pending are merged into it. Widget refreshes are deferrable: one job is kept pending for the
+ * coalescing window of WidgetUpdateScheduler and every request in between joins it.
+ */
+
+@TargetApi(Build.VERSION_CODES.LOLLIPOP)
+public class PlantJobService extends JobService {
+
+    // One job ID per kind of work, scheduling a job again replaces the pending one
+    static final int JOB_ID_WATER_PLANT = 1;
+    static final int JOB_ID_WATER_PLANTS = 2;
+    static final int JOB_ID_UPDATE_PLANT_WIDGETS = 3;
+
+    // Set when every plant that can be watered should be, rather than a list of IDs
+    private static final String EXTRA_ALL_PLANTS = "com.example.android.mygarden.extra.ALL_PLANTS";
+
+    // How much longer than the window a widget refresh may be held back by the system
+    private static final long MAX_WIDGET_UPDATE_DELAY_MILLIS = 5000;
+
+    // Jobs run one at a time off the main thread, in the order they started
+    private static final ExecutorService sExecutor = Executors.newSingleThreadExecutor();
+
+    /**
+     * Schedules the plant to be watered as soon as possible
+     *
+     * @param context The context
+     * @param plantId The ID of the plant to water
+     */
+    static void scheduleWaterPlant(Context context, long plantId) {
+        JobScheduler jobScheduler = getJobScheduler(context);
+        long[] plantIds = mergePlantIds(getPendingExtras(jobScheduler, JOB_ID_WATER_PLANT), new long[]{plantId});
+        PersistableBundle extras = new PersistableBundle();
+        extras.putLongArray(PlantWateringService.EXTRA_PLANT_IDS, plantIds);
+        jobScheduler.schedule(buildWateringJob(context, JOB_ID_WATER_PLANT, extras));
+    }
+
+    /**
+     * Schedules the plants to be watered in one update as soon as possible
+     *
+     * @param context  The context
+     * @param plantIds The IDs of the plants to water, or null for every plant that can be watered
+     */
+    static void scheduleWaterPlants(Context context, long[] plantIds) {
+        JobScheduler jobScheduler = getJobScheduler(context);
+        PersistableBundle pending = getPendingExtras(jobScheduler, JOB_ID_WATER_PLANTS);
+        PersistableBundle extras = new PersistableBundle();
+        if (plantIds == null || (pending != null && pending.getInt(EXTRA_ALL_PLANTS) != 0)) {
+            extras.putInt(EXTRA_ALL_PLANTS, 1);
+        } else {
+            extras.putLongArray(PlantWateringService.EXTRA_PLANT_IDS, mergePlantIds(pending, plantIds));
+        }
+        jobScheduler.schedule(buildWateringJob(context, JOB_ID_WATER_PLANTS, extras));
+    }
+
+    /**
+     * Schedules a widget refresh no sooner than windowMillis from now
+     *
+     * @param context      The context
+     * @param windowMillis How long to hold the refresh back so that more requests can join it
+     */
+    static void scheduleUpdatePlantWidgets(Context context, long windowMillis) {
+        JobInfo job = new JobInfo.Builder(JOB_ID_UPDATE_PLANT_WIDGETS,
+                new ComponentName(context, PlantJobService.class))
+                .setMinimumLatency(windowMillis)
+                .setOverrideDeadline(windowMillis + MAX_WIDGET_UPDATE_DELAY_MILLIS)
+                .setPersisted(true)
+                .build();
+        getJobScheduler(context).schedule(job);
+    }
+
+    @Override
+    public boolean onStartJob(final JobParameters params) {
+        sExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                runJob(params);
+                jobFinished(params, false);
+            }
+        });
+        return true;
+    }
+
+    @Override
+    public boolean onStopJob(JobParameters params) {
+        // Watering must not be lost, widget refreshes are requested again by whoever needs them
+        return params.getJobId() != JOB_ID_UPDATE_PLANT_WIDGETS;
+    }
+
+    private void runJob(JobParameters params) {
+        PersistableBundle extras = params.getExtras();
+        switch (params.getJobId()) {
+            case JOB_ID_WATER_PLANT:
+                long[] plantIds = extras.getLongArray(PlantWateringService.EXTRA_PLANT_IDS);
+                if (plantIds == null) break;
+                for (long plantId : plantIds) {
+                    PlantWateringTasks.waterPlant(this, plantId);
+                }
+                break;
+            case JOB_ID_WATER_PLANTS:
+                PlantWateringTasks.waterPlants(this, extras.getInt(EXTRA_ALL_PLANTS) != 0
+                        ? null : extras.getLongArray(PlantWateringService.EXTRA_PLANT_IDS));
+                break;
+            case JOB_ID_UPDATE_PLANT_WIDGETS:
+                PlantWateringTasks.updatePlantWidgets(this);
+                break;
+        }
+    }
+
+    private static JobInfo buildWateringJob(Context context, int jobId, PersistableBundle extras) {
+        return new JobInfo.Builder(jobId, new ComponentName(context, PlantJobService.class))
+                .setOverrideDeadline(0)
+                .setExtras(extras)
+                .setPersisted(true)
+                .build();
+    }
+
+    private static JobScheduler getJobScheduler(Context context) {
+        return (JobScheduler) context.getSystemService(Context.JOB_SCHEDULER_SERVICE);
+    }
+
+    // Returns the extras of the job with this ID if it is still waiting to run, or null
+    private static PersistableBundle getPendingExtras(JobScheduler jobScheduler, int jobId) {
+        for (JobInfo job : jobScheduler.getAllPendingJobs()) {
+            if (job.getId() == jobId) return job.getExtras();
+        }
+        return null;
+    }
+
+    // Adds the plant IDs of a pending job to the new ones, leaving out repeats
+    private static long[] mergePlantIds(PersistableBundle pending, long[] plantIds) {
+        long[] pendingIds = pending == null ? null : pending.getLongArray(PlantWateringService.EXTRA_PLANT_IDS);
+        if (pendingIds == null || pendingIds.length == 0) return plantIds;
+        long[] merged = Arrays.copyOf(pendingIds, pendingIds.length + plantIds.length);
+        int count = pendingIds.length;
+        for (long plantId : plantIds) {
+            boolean found = false;
+            for (int i = 0; i < pendingIds.length && !found; i++) {
+                found = pendingIds[i] == plantId;
+            }
+            if (!found) merged[count++] = plantId;
+        }
+        return Arrays.copyOf(merged, count);
+    }
+}
@@ -0,0 +1,70 @@
+package com.example.android.mygarden.service;
+
+import android.app.AlarmManager;
+import android.app.PendingIntent;
+import android.content.Context;
+import android.content.Intent;
+import android.os.Build;
+
+import com.example.android.mygarden.provider.PlantRecord;
+import com.example.android.mygarden.provider.PlantRepository;
+import com.example.android.mygarden.utils.PlantUtils;
+import com.example.android.mygarden.wiget.PlantWidgetActionReceiver;
+
+/**
+ * Arms a single alarm for the next moment any plant grows, starts to wilt, dies or can be
+ * watered again, so the widgets are refreshed exactly when what they show changes.
+ */
+
+class PlantTransitionScheduler {
+
+    private static final int REQUEST_CODE_TRANSITION = 1;
+
+    private PlantTransitionScheduler() {
+    }
+
+    /**
+     * Replaces any armed alarm with one for the next plant state change, or cancels it
+     * if no plant will change again
+     *
+     * @param context The context
+     */
+    static void scheduleNextTransition(Context context) {
+
+        long timeNow = System.currentTimeMillis();
+        long nextTransition = Long.MAX_VALUE;
+
+        PlantRecord plants = PlantRepository.getInstance(context).getPlants();
+        for (int i = 0; i < plants.size(); i++) {
+            long plantTransition = PlantUtils.getNextTransitionTime(
+                    plants.getCreatedAt(i), plants.getWateredAt(i), timeNow);
+            if (plantTransition < nextTransition) nextTransition = plantTransition;
+        }
+
+        AlarmManager alarmManager = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
+        PendingIntent transitionIntent = getTransitionPendingIntent(context);
+
+        if (nextTransition == Long.MAX_VALUE) {
+            alarmManager.cancel(transitionIntent);
+            return;
+        }
+
+        // RTC rather than RTC_WAKEUP - widgets are only seen with the screen on, and a missed
+        // alarm is delivered as soon as the device wakes up
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+            alarmManager.setExact(AlarmManager.RTC, nextTransition, transitionIntent);
+        } else {
+            alarmManager.set(AlarmManager.RTC, nextTransition, transitionIntent);
+        }
+    }
+
+    private static PendingIntent getTransitionPendingIntent(Context context) {
+        Intent intent = PlantWidgetActionReceiver.buildIntent(
+                context, PlantWateringService.ACTION_UPDATE_PLANT_WIDGETS);
+        return PendingIntent.getBroadcast(
+                context,
+                REQUEST_CODE_TRANSITION,
+                intent,
+                PendingIntent.FLAG_UPDATE_CURRENT);
+    }
+}
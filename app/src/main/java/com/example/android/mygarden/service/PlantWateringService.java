@@ -2,24 +2,13 @@ package com.example.android.mygarden.service;
 
 
 import android.app.IntentService;
-import android.appwidget.AppWidgetManager;
-import android.content.ComponentName;
-import android.content.ContentUris;
-import android.content.ContentValues;
 import android.content.Context;
 import android.content.Intent;
-import android.database.Cursor;
-import android.net.Uri;
 import android.os.Build;
 import android.support.annotation.RequiresApi;
+import android.support.annotation.WorkerThread;
 
-import com.example.android.mygarden.wiget.PlantWidgetProvider;
-import com.example.android.mygarden.R;
 import com.example.android.mygarden.provider.PlantContract;
-import com.example.android.mygarden.utils.PlantUtils;
-
-import static com.example.android.mygarden.provider.PlantContract.BASE_CONTENT_URI;
-import static com.example.android.mygarden.provider.PlantContract.PATH_PLANTS;
 
 /**
  * Created by J on 08/07/2017.
@@ -27,6 +16,10 @@ import static com.example.android.mygarden.provider.PlantContract.PATH_PLANTS;
 
 // In this exercise we will start by creating an IntentService class called PlantWateringService that extends from IntentService.
 
+// From Lollipop the actions are run as jobs by PlantJobService instead, so watering runs straight
+// away, widget refreshes can be deferred and folded together, and both survive process death.
+// The IntentService remains the fallback for older releases.
+
 public class PlantWateringService extends IntentService {
     /**
      * Creates an IntentService.  Invoked by your subclass's constructor.
@@ -42,6 +35,10 @@ public class PlantWateringService extends IntentService {
     public static final String ACTION_WATER_PLANT =
             "com.example.android.mygarden.action.water_plant";
 
+    // Add action to water several plants (or every plant that can be watered) in one update
+    public static final String ACTION_WATER_PLANTS =
+            "com.example.android.mygarden.action.water_plants";
+
     // Set another action for updating the widgets
     public static final String ACTION_UPDATE_PLANT_WIDGETS =
             "com.example.android.mygarden.action.update_plant_widgets";
@@ -49,20 +46,58 @@ public class PlantWateringService extends IntentService {
     // Set the ID to pass in the plant ID as an extra
     public static final String EXTRA_PLANT_ID = "com.example.android.mygarden.extra.PLANT_ID";
 
+    // Set the IDs of the plants to water, leave out to water every plant that can be watered
+    public static final String EXTRA_PLANT_IDS = "com.example.android.mygarden.extra.PLANT_IDS";
+
     public PlantWateringService() {
         super(serviceName);
     }
 
     public static void startActionWaterPlant(Context context, long plantId) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+            PlantJobService.scheduleWaterPlant(context, plantId);
+            return;
+        }
         Intent intent = new Intent(context, PlantWateringService.class);
         intent.setAction(ACTION_WATER_PLANT);       // Pass in action to water one plant
         intent.putExtra(EXTRA_PLANT_ID, plantId);   // Pass in the ID of the plant as an extra
         context.startService(intent);
     }
 
-    // For updating the plant widgets
+    // For watering many plants at once - pass null to water all the plants that need it
+
+    public static void startActionWaterPlants(Context context, long[] plantIds) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+            PlantJobService.scheduleWaterPlants(context, plantIds);
+            return;
+        }
+        Intent intent = new Intent(context, PlantWateringService.class);
+        intent.setAction(ACTION_WATER_PLANTS);
+        if (plantIds != null) intent.putExtra(EXTRA_PLANT_IDS, plantIds);
+        context.startService(intent);
+    }
+
+    // For updating the plant widgets - requests made close together are folded into one refresh
 
     public static void startActionUpdatePlantWidgets(Context context) {
+        WidgetUpdateScheduler.requestUpdate(context);
+    }
+
+    // For drawing a widget that was just configured, before its configure activity returns.
+    // Reads the garden, so call it off the UI thread.
+
+    @WorkerThread
+    public static void updatePlantWidgetNow(Context context, int appWidgetId) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+            PlantWateringTasks.updatePlantWidget(context, appWidgetId);
+        } else {
+            startActionUpdatePlantWidgets(context);
+        }
+    }
+
+    // Called by the WidgetUpdateScheduler once its window closes, before Lollipop only
+
+    static void startUpdatePlantWidgetsService(Context context) {
         Intent intent = new Intent(context, PlantWateringService.class);
         intent.setAction(ACTION_UPDATE_PLANT_WIDGETS);
         context.startService(intent);
@@ -82,94 +117,18 @@ public class PlantWateringService extends IntentService {
                 // Gets the id of the plant passed in
                 final long plantId = intent.getLongExtra(EXTRA_PLANT_ID, PlantContract.INVALID_PLANT_ID);
 
-                handleActionWaterPlant(plantId);
-
-            } else if (ACTION_UPDATE_PLANT_WIDGETS.equals(action)) {
-                handleActionUpdatePlantWidgets();
-            }
-        }
-    }
-
-    // A method to water one plant only
+                PlantWateringTasks.waterPlant(this, plantId);
 
-    private void handleActionWaterPlant(long plantId) {
+            } else if (ACTION_WATER_PLANTS.equals(action)) {
 
-        Uri SINGLE_PLANT_URI = ContentUris.withAppendedId(
-                BASE_CONTENT_URI.buildUpon().appendPath(PATH_PLANTS).build(), plantId);
+                // Null when every plant that can be watered should be
+                final long[] plantIds = intent.getLongArrayExtra(EXTRA_PLANT_IDS);
 
-        long timeNow = System.currentTimeMillis();
+                PlantWateringTasks.waterPlants(this, plantIds);
 
-        ContentValues contentValues = new ContentValues();
-        contentValues.put(PlantContract.PlantEntry.COLUMN_LAST_WATERED_TIME, timeNow);
-
-        getContentResolver().update(
-                SINGLE_PLANT_URI,
-                contentValues,
-                PlantContract.PlantEntry.COLUMN_LAST_WATERED_TIME + ">?",
-                new String[]{String.valueOf(timeNow - PlantUtils.MAX_AGE_WITHOUT_WATER)});
-
-        startActionUpdatePlantWidgets(this);    // update the widgets after data change
-    }
-
-    @RequiresApi(api = Build.VERSION_CODES.JELLY_BEAN)
-    private void handleActionUpdatePlantWidgets() {
-
-        boolean canWater = false; // Default to hide the water drop button
-        long plantId = PlantContract.INVALID_PLANT_ID;
-
-//      Get plant that is most in need of water (close to dying)
-
-        Uri PLANT_URI = BASE_CONTENT_URI.buildUpon().appendPath(PATH_PLANTS).build();
-        Cursor cursor = getContentResolver().query(
-                PLANT_URI,
-                null,
-                null,
-                null,
-                PlantContract.PlantEntry.COLUMN_LAST_WATERED_TIME
-        );
-
-        // Extract the plant details
-        int imgRes = R.drawable.grass; // Default image in case garden is empty
-
-        // Check that the cursor actually returned something from the query
-        if ( cursor != null && cursor.getCount() > 0 ) {
-            cursor.moveToFirst();
-
-            // column indexes
-
-            int idIndex = cursor.getColumnIndex(PlantContract.PlantEntry._ID);  // gets the plant ID
-            plantId = cursor.getLong(idIndex);
-
-            int createTimeIndex = cursor.getColumnIndex(PlantContract.PlantEntry.COLUMN_CREATION_TIME);
-            int waterTimeIndex = cursor.getColumnIndex(PlantContract.PlantEntry.COLUMN_LAST_WATERED_TIME);
-            int plantTypeIndex = cursor.getColumnIndex(PlantContract.PlantEntry.COLUMN_PLANT_TYPE);
-
-            // get values from column indexes
-            long timeNow = System.currentTimeMillis();
-            long wateredAt = cursor.getLong(waterTimeIndex);
-            long createdAt = cursor.getLong(createTimeIndex);
-            int plantType = cursor.getInt(plantTypeIndex);
-
-            // close the cursor after use
-            cursor.close();
-
-            // Can this plant be watered or not?
-            canWater = (timeNow - wateredAt) > PlantUtils.MIN_AGE_BETWEEN_WATER &&
-                    (timeNow - wateredAt) < PlantUtils.MAX_AGE_WITHOUT_WATER;
-
-            // Get appropriate image resource to be displayed in the widget
-            imgRes = PlantUtils.getPlantImageRes(this, timeNow-createdAt, timeNow-wateredAt, plantType);
+            } else if (ACTION_UPDATE_PLANT_WIDGETS.equals(action)) {
+                PlantWateringTasks.updatePlantWidgets(this);
+            }
         }
-
-        AppWidgetManager appWidgetManager = AppWidgetManager.getInstance(this);
-        int [] appWidgetIDs = appWidgetManager.getAppWidgetIds(new ComponentName(this, PlantWidgetProvider.class));
-
-        // Trigger data update to handle the GridView widgets and force a data refresh
-        // Notifies the GridView that the data has been changed
-
-        appWidgetManager.notifyAppWidgetViewDataChanged(appWidgetIDs, R.id.widget_grid_view);
-
-        // Now update all widgets   - pass in the plant ID and the canWater boolean
-        PlantWidgetProvider.updatePlantWidgets(this, appWidgetManager, imgRes, plantId, canWater, appWidgetIDs);
     }
 }
@@ -0,0 +1,216 @@
+package com.example.android.mygarden.service;
+
+import android.appwidget.AppWidgetManager;
+import android.content.ComponentName;
+import android.content.ContentValues;
+import android.content.Context;
+import android.net.Uri;
+import android.os.Build;
+import android.support.annotation.RequiresApi;
+
+import com.example.android.mygarden.R;
+import com.example.android.mygarden.core.PlantRules;
+import com.example.android.mygarden.provider.PlantContract;
+import com.example.android.mygarden.provider.PlantRecord;
+import com.example.android.mygarden.provider.PlantRepository;
+import com.example.android.mygarden.utils.PerfTrace;
+import com.example.android.mygarden.utils.PlantUtils;
+import com.example.android.mygarden.wiget.PlantWidgetPrefs;
+import com.example.android.mygarden.wiget.PlantWidgetProvider;
+
+import java.util.Arrays;
+
+import static com.example.android.mygarden.provider.PlantContract.BASE_CONTENT_URI;
+import static com.example.android.mygarden.provider.PlantContract.PATH_PLANTS;
+
+/**
+ * The work behind each watering service action. Run on a background thread, either by
+ * PlantWateringService or by PlantJobService depending on the platform version, and timed
+ * per action here so both are covered.
+ */
+
+class PlantWateringTasks {
+
+    private PlantWateringTasks() {
+    }
+
+    // A method to water one plant only
+
+    static void waterPlant(Context context, long plantId) {
+        long start = PerfTrace.begin(PerfTrace.WATER_PLANT);
+        try {
+            runWaterPlant(context, plantId);
+        } finally {
+            PerfTrace.end(PerfTrace.WATER_PLANT, start);
+        }
+    }
+
+    private static void runWaterPlant(Context context, long plantId) {
+
+        // The provider waters the plant through its compiled statement, at the current time and
+        // only if the plant is still alive
+
+        context.getContentResolver().update(
+                PlantContract.buildWaterPlantUri(plantId), null, null, null);
+
+        PlantWateringService.startActionUpdatePlantWidgets(context);    // update the widgets after data change
+    }
+
+    // A method to water many plants with a single update and a single widget refresh
+
+    static void waterPlants(Context context, long[] plantIds) {
+        long start = PerfTrace.begin(PerfTrace.WATER_PLANTS);
+        try {
+            runWaterPlants(context, plantIds);
+        } finally {
+            PerfTrace.end(PerfTrace.WATER_PLANTS, start);
+        }
+    }
+
+    private static void runWaterPlants(Context context, long[] plantIds) {
+
+        Uri PLANT_URI = BASE_CONTENT_URI.buildUpon().appendPath(PATH_PLANTS).build();
+
+        long timeNow = System.currentTimeMillis();
+
+        ContentValues contentValues = new ContentValues();
+        contentValues.put(PlantContract.PlantEntry.COLUMN_LAST_WATERED_TIME, timeNow);
+
+        // Only plants that are still alive and were not watered too recently, with the same
+        // strict bounds as PlantRules.canWater so no plant without a water button is watered
+        StringBuilder selection = new StringBuilder(
+                PlantContract.PlantEntry.COLUMN_LAST_WATERED_TIME + " > ? AND "
+                        + PlantContract.PlantEntry.COLUMN_LAST_WATERED_TIME + " < ?");
+
+        // IDs are numbers so they are inlined rather than bound, which keeps clear of the
+        // SQLite bound-argument limit for large gardens
+        if (plantIds != null) {
+            if (plantIds.length == 0) return;
+            selection.append(" AND ").append(PlantContract.PlantEntry._ID).append(" IN (");
+            for (int i = 0; i < plantIds.length; i++) {
+                if (i > 0) selection.append(',');
+                selection.append(plantIds[i]);
+            }
+            selection.append(')');
+        }
+
+        int plantsWatered = context.getContentResolver().update(
+                PLANT_URI,
+                contentValues,
+                selection.toString(),
+                new String[]{
+                        String.valueOf(timeNow - PlantUtils.MAX_AGE_WITHOUT_WATER),
+                        String.valueOf(timeNow - PlantUtils.MIN_AGE_BETWEEN_WATER)});
+
+        if (plantsWatered > 0) PlantWateringService.startActionUpdatePlantWidgets(context);    // one refresh for the batch
+    }
+
+    @RequiresApi(api = Build.VERSION_CODES.JELLY_BEAN)
+    static void updatePlantWidgets(Context context) {
+        long start = PerfTrace.begin(PerfTrace.UPDATE_PLANT_WIDGETS);
+        try {
+            runUpdatePlantWidgets(context);
+        } finally {
+            PerfTrace.end(PerfTrace.UPDATE_PLANT_WIDGETS, start);
+        }
+    }
+
+    @RequiresApi(api = Build.VERSION_CODES.JELLY_BEAN)
+    private static void runUpdatePlantWidgets(Context context) {
+
+        WidgetUpdateScheduler.onRefreshExecuted();
+
+        PlantRepository repository = PlantRepository.getInstance(context);
+        long timeNow = System.currentTimeMillis();
+
+        AppWidgetManager appWidgetManager = AppWidgetManager.getInstance(context);
+        int [] appWidgetIDs = appWidgetManager.getAppWidgetIds(new ComponentName(context, PlantWidgetProvider.class));
+
+        // Looked up once, for the first widget that follows the neediest plant
+        PlantRecord neediest = null;
+
+        int[] gridWidgetIDs = new int[appWidgetIDs.length];
+        int gridWidgetCount = 0;
+
+        for (int appWidgetId : appWidgetIDs) {
+
+            // Each widget shows the plant it is pinned to, or the plant most in need of water
+            // (close to dying) if it has no pin or its plant is gone - served from the in-memory garden
+
+            PlantRecord plants = getPinnedPlant(context, repository, appWidgetId);
+            if (plants.size() == 0) {
+                if (neediest == null) neediest = repository.getNeediestPlant(timeNow);
+                plants = neediest;
+            }
+
+            if (renderPlantWidget(context, appWidgetManager, appWidgetId, plants, timeNow)) {
+                gridWidgetIDs[gridWidgetCount++] = appWidgetId;
+            }
+        }
+
+        // Trigger data update to handle the GridView widgets and force a data refresh
+        // Notifies the GridView that the data has been changed
+
+        if (gridWidgetCount > 0) {
+            appWidgetManager.notifyAppWidgetViewDataChanged(
+                    Arrays.copyOf(gridWidgetIDs, gridWidgetCount), R.id.widget_grid_view);
+        }
+
+        // Refresh again when the next plant changes state, only needed while widgets are shown
+        if (appWidgetIDs.length > 0) PlantTransitionScheduler.scheduleNextTransition(context);
+    }
+
+    /**
+     * Draws a single widget straight away, for a widget that was just configured
+     *
+     * @param appWidgetId The widget to draw
+     */
+    @RequiresApi(api = Build.VERSION_CODES.JELLY_BEAN)
+    static void updatePlantWidget(Context context, int appWidgetId) {
+        PlantRepository repository = PlantRepository.getInstance(context);
+        long timeNow = System.currentTimeMillis();
+        AppWidgetManager appWidgetManager = AppWidgetManager.getInstance(context);
+
+        PlantRecord plants = getPinnedPlant(context, repository, appWidgetId);
+        if (plants.size() == 0) plants = repository.getNeediestPlant(timeNow);
+
+        if (renderPlantWidget(context, appWidgetManager, appWidgetId, plants, timeNow)) {
+            appWidgetManager.notifyAppWidgetViewDataChanged(appWidgetId, R.id.widget_grid_view);
+        }
+        PlantTransitionScheduler.scheduleNextTransition(context);
+    }
+
+    // The plant a widget is pinned to, or an empty record if it has no pin or its plant is gone
+    private static PlantRecord getPinnedPlant(Context context, PlantRepository repository, int appWidgetId) {
+        long pinnedPlantId = PlantWidgetPrefs.getPinnedPlantId(context, appWidgetId);
+        return pinnedPlantId == PlantContract.INVALID_PLANT_ID
+                ? PlantRecord.EMPTY : repository.getPlant(pinnedPlantId);
+    }
+
+    // Draws a widget for the first plant of the record, returning true if it shows the garden grid
+    @RequiresApi(api = Build.VERSION_CODES.JELLY_BEAN)
+    private static boolean renderPlantWidget(Context context, AppWidgetManager appWidgetManager,
+                                             int appWidgetId, PlantRecord plants, long timeNow) {
+        boolean canWater = false; // Default to hide the water drop button
+        long plantId = PlantContract.INVALID_PLANT_ID;
+        int imgRes = R.drawable.grass; // Default image in case garden is empty
+
+        // Check that there actually is a plant to show
+        if (plants.size() > 0) {
+            plantId = plants.getId(0);
+
+            long wateredAt = plants.getWateredAt(0);
+            long createdAt = plants.getCreatedAt(0);
+            int plantType = plants.getType(0);
+
+            // Can this plant be watered or not?
+            canWater = PlantRules.canWater(timeNow - wateredAt);
+
+            // Get appropriate image resource to be displayed in the widget
+            imgRes = PlantUtils.getPlantImageRes(context, timeNow-createdAt, timeNow-wateredAt, plantType);
+        }
+
+        // Widgets whose plant has not changed are skipped, the others only get what changed
+        return PlantWidgetProvider.updateAppWidget(context, appWidgetManager, imgRes, plantId, canWater, appWidgetId);
+    }
+}
@@ -0,0 +1,100 @@
+package com.example.android.mygarden.service;
+
+import android.content.Context;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Folds widget update requests that arrive within a short window into a single
+ * ACTION_UPDATE_PLANT_WIDGETS, so bursts of edits or widget resizes refresh the widgets once.
+ * From Lollipop the window is a deferred PlantJobService job, before that a delayed message.
+ */
+
+public class WidgetUpdateScheduler {
+
+    // How long to wait for more requests before refreshing
+    public static final long DEFAULT_WINDOW_MILLIS = 250;
+
+    private static final Handler sHandler = new Handler(Looper.getMainLooper());
+
+    private static final AtomicLong sRequestsReceived = new AtomicLong();
+    private static final AtomicLong sRefreshesExecuted = new AtomicLong();
+
+    private static volatile long sWindowMillis = DEFAULT_WINDOW_MILLIS;
+
+    // Guarded by the class lock
+    private static boolean sPending;
+    private static Context sAppContext;
+
+    private static final Runnable sFlush = new Runnable() {
+        @Override
+        public void run() {
+            Context context;
+            synchronized (WidgetUpdateScheduler.class) {
+                sPending = false;
+                context = sAppContext;
+            }
+            PlantWateringService.startUpdatePlantWidgetsService(context);
+        }
+    };
+
+    private WidgetUpdateScheduler() {
+    }
+
+    /**
+     * Asks for the widgets to be refreshed, joining a refresh that is already pending if any
+     *
+     * @param context The context
+     */
+    static void requestUpdate(Context context) {
+        sRequestsReceived.incrementAndGet();
+        synchronized (WidgetUpdateScheduler.class) {
+            sAppContext = context.getApplicationContext();
+            if (sPending) return;
+            sPending = true;
+        }
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+            PlantJobService.scheduleUpdatePlantWidgets(context, sWindowMillis);
+        } else {
+            sHandler.postDelayed(sFlush, sWindowMillis);
+        }
+    }
+
+    // Called each time the widgets are actually refreshed, later requests need a new refresh
+    static void onRefreshExecuted() {
+        sRefreshesExecuted.incrementAndGet();
+        synchronized (WidgetUpdateScheduler.class) {
+            sPending = false;
+        }
+    }
+
+    /**
+     * Sets how long requests are collected before the widgets are refreshed
+     *
+     * @param windowMillis The window in milliseconds, 0 only folds requests posted together
+     */
+    public static void setWindowMillis(long windowMillis) {
+        sWindowMillis = Math.max(0, windowMillis);
+    }
+
+    public static long getWindowMillis() {
+        return sWindowMillis;
+    }
+
+    /**
+     * @return Number of widget update requests received since the process started
+     */
+    public static long getRequestsReceived() {
+        return sRequestsReceived.get();
+    }
+
+    /**
+     * @return Number of widget refreshes actually run since the process started
+     */
+    public static long getRefreshesExecuted() {
+        return sRefreshesExecuted.get();
+    }
+}
@@ -16,7 +16,6 @@ package com.example.android.mygarden.ui;
 * limitations under the License.
 */
 
-import android.content.ContentValues;
 import android.os.Bundle;
 import android.support.v7.app.AppCompatActivity;
 import android.support.v7.widget.LinearLayoutManager;
@@ -26,8 +25,7 @@ import android.widget.ImageView;
 
 import com.example.android.mygarden.R;
 import com.example.android.mygarden.adapter.PlantTypesAdapter;
-import com.example.android.mygarden.provider.PlantContract;
-import com.example.android.mygarden.service.PlantWateringService;
+import com.example.android.mygarden.provider.PlantRepository;
 
 public class AddPlantActivity extends AppCompatActivity {
     private RecyclerView mTypesRecyclerView;
@@ -60,17 +58,10 @@ public class AddPlantActivity extends AppCompatActivity {
         ImageView imgView = (ImageView) view.findViewById(R.id.plant_type_image);
         int plantType = (int) imgView.getTag();
         long timeNow = System.currentTimeMillis();
-        // Insert the new plant into DB
-        ContentValues contentValues = new ContentValues();
-        contentValues.put(PlantContract.PlantEntry.COLUMN_PLANT_TYPE, plantType);
-        contentValues.put(PlantContract.PlantEntry.COLUMN_CREATION_TIME, timeNow);
-        contentValues.put(PlantContract.PlantEntry.COLUMN_LAST_WATERED_TIME, timeNow);
-        getContentResolver().insert(PlantContract.PlantEntry.CONTENT_URI, contentValues);
+        // Queue the new plant to be inserted into the DB, this also updates the widgets
+        PlantRepository.getInstance(this).addPlant(plantType, timeNow);
 
-        // Call to update the widgets - Add new plant
-        PlantWateringService.startActionUpdatePlantWidgets(this);
-
-        // Close this activity
+        // Close this activity without waiting for the insert, the garden shows the plant once it lands
         finish();
     }
 
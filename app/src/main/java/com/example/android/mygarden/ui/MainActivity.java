@@ -17,31 +17,34 @@ package com.example.android.mygarden.ui;
 */
 
 import android.content.Intent;
-import android.database.Cursor;
-import android.net.Uri;
 import android.os.Bundle;
 import android.support.v4.app.LoaderManager;
-import android.support.v4.content.CursorLoader;
 import android.support.v4.content.Loader;
 import android.support.v7.app.AppCompatActivity;
 import android.support.v7.widget.GridLayoutManager;
 import android.support.v7.widget.RecyclerView;
+import android.view.Menu;
+import android.view.MenuItem;
 import android.view.View;
 import android.widget.ImageView;
 
 import com.example.android.mygarden.R;
 import com.example.android.mygarden.adapter.PlantListAdapter;
-
-import static com.example.android.mygarden.provider.PlantContract.BASE_CONTENT_URI;
-import static com.example.android.mygarden.provider.PlantContract.PATH_PLANTS;
-import static com.example.android.mygarden.provider.PlantContract.PlantEntry;
+import com.example.android.mygarden.provider.PlantRecord;
+import com.example.android.mygarden.service.PlantWateringService;
 
 public class MainActivity
         extends AppCompatActivity
-        implements LoaderManager.LoaderCallbacks<Cursor> {
+        implements LoaderManager.LoaderCallbacks<PlantRecord>, PlantListAdapter.OnLoadMoreListener {
 
     private static final int GARDEN_LOADER_ID = 100;
+
+    // The garden is loaded a page at a time as the grid scrolls
+    private static final int PAGE_SIZE = 100;
+    private static final String STATE_PAGE_COUNT = "page_count";
+
     private PlantListAdapter mAdapter;
+    private int mPageCount = 1;
 
     private RecyclerView mGardenRecyclerView;
 
@@ -55,23 +58,54 @@ public class MainActivity
         mGardenRecyclerView.setLayoutManager(
                 new GridLayoutManager(this, 4)
         );
-        mAdapter = new PlantListAdapter(this, null);
+        mAdapter = new PlantListAdapter(this);
+        mAdapter.setOnLoadMoreListener(this);
         mGardenRecyclerView.setAdapter(mAdapter);
 
+        if (savedInstanceState != null) {
+            mPageCount = savedInstanceState.getInt(STATE_PAGE_COUNT, 1);
+        }
+
         getSupportLoaderManager().initLoader(GARDEN_LOADER_ID, null, this);
     }
 
     @Override
-    public Loader<Cursor> onCreateLoader(int id, Bundle args) {
-        Uri PLANT_URI = BASE_CONTENT_URI.buildUpon().appendPath(PATH_PLANTS).build();
-        return new CursorLoader(this, PLANT_URI, null,
-                null, null, PlantEntry.COLUMN_CREATION_TIME);
+    protected void onStart() {
+        super.onStart();
+        mAdapter.setClockRunning(true);
+    }
+
+    @Override
+    protected void onStop() {
+        mAdapter.setClockRunning(false);
+        super.onStop();
+    }
+
+    @Override
+    protected void onSaveInstanceState(Bundle outState) {
+        super.onSaveInstanceState(outState);
+        outState.putInt(STATE_PAGE_COUNT, mPageCount);
+    }
+
+    // Loads every page scrolled to so far, sorted by creation time with the ID to break ties.
+    // After the first load only the plants that change and each next page are read.
+    @Override
+    public Loader<PlantRecord> onCreateLoader(int id, Bundle args) {
+        return new PlantRecordLoader(this, mPageCount * PAGE_SIZE);
+    }
+
+    @Override
+    public void onLoadFinished(Loader<PlantRecord> loader, PlantRecord plants) {
+        // A full last page means there may be more plants to load
+        boolean hasMore = plants != null && plants.size() >= ((PlantRecordLoader) loader).getLimit();
+        mAdapter.swapPlants(plants, hasMore);
     }
 
     @Override
-    public void onLoadFinished(Loader<Cursor> loader, Cursor cursor) {
-        cursor.moveToFirst();
-        mAdapter.swapCursor(cursor);
+    public void onLoadMore() {
+        mPageCount++;
+        Loader<PlantRecord> loader = getSupportLoaderManager().getLoader(GARDEN_LOADER_ID);
+        if (loader != null) ((PlantRecordLoader) loader).loadMore(PAGE_SIZE);
     }
 
     @Override
@@ -79,6 +113,22 @@ public class MainActivity
 
     }
 
+    @Override
+    public boolean onCreateOptionsMenu(Menu menu) {
+        getMenuInflater().inflate(R.menu.main, menu);
+        return true;
+    }
+
+    @Override
+    public boolean onOptionsItemSelected(MenuItem item) {
+        if (item.getItemId() == R.id.action_water_all) {
+            // One batch update waters every plant that can be watered right now
+            PlantWateringService.startActionWaterPlants(this, null);
+            return true;
+        }
+        return super.onOptionsItemSelected(item);
+    }
+
     public void onPlantClick(View view) {
         ImageView imgView = (ImageView) view.findViewById(R.id.plant_list_item_image);
         long plantId = (long) imgView.getTag();
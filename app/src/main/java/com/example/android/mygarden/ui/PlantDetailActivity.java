@@ -16,13 +16,9 @@ package com.example.android.mygarden.ui;
 * limitations under the License.
 */
 
-import android.content.ContentUris;
-import android.content.ContentValues;
-import android.database.Cursor;
-import android.net.Uri;
 import android.os.Bundle;
+import android.os.Handler;
 import android.support.v4.app.LoaderManager;
-import android.support.v4.content.CursorLoader;
 import android.support.v4.content.Loader;
 import android.support.v7.app.AppCompatActivity;
 import android.view.View;
@@ -30,29 +26,80 @@ import android.widget.ImageView;
 import android.widget.TextView;
 
 import com.example.android.mygarden.R;
+import com.example.android.mygarden.core.PlantRules;
 import com.example.android.mygarden.provider.PlantContract;
+import com.example.android.mygarden.provider.PlantRecord;
+import com.example.android.mygarden.provider.PlantRepository;
 import com.example.android.mygarden.service.PlantWateringService;
 import com.example.android.mygarden.utils.PlantUtils;
 
-import static com.example.android.mygarden.provider.PlantContract.BASE_CONTENT_URI;
-import static com.example.android.mygarden.provider.PlantContract.PATH_PLANTS;
-
 public class PlantDetailActivity extends AppCompatActivity
-        implements LoaderManager.LoaderCallbacks<Cursor> {
+        implements LoaderManager.LoaderCallbacks<PlantRecord> {
 
     private static final int SINGLE_LOADER_ID = 200;
     public static final String EXTRA_PLANT_ID = "com.example.android.mygarden.extra.PLANT_ID";
     long mPlantId;
 
+    // The last loaded values of the plant, the displayed ages are worked out from these as time
+    // passes and the database is only read again when the plant itself changes
+    private boolean mHasPlant;
+    private int mPlantType;
+    private long mCreatedAt;
+    private long mWateredAt;
+    private int mPlantImgRes;
+
+    private boolean mResumed;
+    private final Handler mTickHandler = new Handler();
+    private final Runnable mTick = new Runnable() {
+        @Override
+        public void run() {
+            updatePlantViews();
+            scheduleTick();
+        }
+    };
+
+    private ImageView mPlantImageView;
+    private TextView mPlantAgeNumberView;
+    private TextView mPlantAgeUnitView;
+    private TextView mLastWateredNumberView;
+    private TextView mLastWateredUnitView;
+    private WaterLevelView mWaterLevelView;
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_plant_detail);
         mPlantId = getIntent().getLongExtra(EXTRA_PLANT_ID, PlantContract.INVALID_PLANT_ID);
-        // This activity displays single plant information that is loaded using a cursor loader
+
+        mPlantImageView = (ImageView) findViewById(R.id.plant_detail_image);
+        mPlantAgeNumberView = (TextView) findViewById(R.id.plant_age_number);
+        mPlantAgeUnitView = (TextView) findViewById(R.id.plant_age_unit);
+        mLastWateredNumberView = (TextView) findViewById(R.id.last_watered_number);
+        mLastWateredUnitView = (TextView) findViewById(R.id.last_watered_unit);
+        mWaterLevelView = (WaterLevelView) findViewById(R.id.water_level);
+        ((TextView) findViewById(R.id.plant_detail_name)).setText(String.valueOf(mPlantId));
+
+        // This activity displays single plant information, reloaded only when that plant changes
         getSupportLoaderManager().initLoader(SINGLE_LOADER_ID, null, this);
     }
 
+    @Override
+    protected void onResume() {
+        super.onResume();
+        mResumed = true;
+        if (mHasPlant) {
+            updatePlantViews();
+            scheduleTick();
+        }
+    }
+
+    @Override
+    protected void onPause() {
+        mResumed = false;
+        mTickHandler.removeCallbacks(mTick);
+        super.onPause();
+    }
+
     public void onBackButtonClick(View view) {
         finish();
     }
@@ -62,58 +109,69 @@ public class PlantDetailActivity extends AppCompatActivity
     }
 
     @Override
-    public Loader<Cursor> onCreateLoader(int id, Bundle args) {
-        Uri SINGLE_PLANT_URI = ContentUris.withAppendedId(
-                BASE_CONTENT_URI.buildUpon().appendPath(PATH_PLANTS).build(), mPlantId);
-        return new CursorLoader(this, SINGLE_PLANT_URI, null,
-                null, null, null);
+    public Loader<PlantRecord> onCreateLoader(int id, Bundle args) {
+        return new PlantRecordLoader(this, mPlantId);
     }
 
     @Override
-    public void onLoadFinished(Loader<Cursor> loader, Cursor cursor) {
-        if (cursor == null || cursor.getCount() < 1) return;
-        cursor.moveToFirst();
-        int createTimeIndex = cursor.getColumnIndex(PlantContract.PlantEntry.COLUMN_CREATION_TIME);
-        int waterTimeIndex = cursor.getColumnIndex(PlantContract.PlantEntry.COLUMN_LAST_WATERED_TIME);
-        int planTypeIndex = cursor.getColumnIndex(PlantContract.PlantEntry.COLUMN_PLANT_TYPE);
-
-        int plantType = cursor.getInt(planTypeIndex);
-        long createdAt = cursor.getLong(createTimeIndex);
-        long wateredAt = cursor.getLong(waterTimeIndex);
+    public void onLoadFinished(Loader<PlantRecord> loader, PlantRecord plant) {
+        if (plant == null || plant.size() < 1) return;
+
+        mHasPlant = true;
+        mPlantType = plant.getType(0);
+        mCreatedAt = plant.getCreatedAt(0);
+        mWateredAt = plant.getWateredAt(0);
+
+        updatePlantViews();
+        scheduleTick();
+    }
+
+    // Recomputes everything shown from the cached plant values and the current time
+    private void updatePlantViews() {
         long timeNow = System.currentTimeMillis();
 
-        int plantImgRes = PlantUtils.getPlantImageRes(this, timeNow - createdAt, timeNow - wateredAt, plantType);
+        int plantImgRes = PlantUtils.getPlantImageRes(this, timeNow - mCreatedAt, timeNow - mWateredAt, mPlantType);
+        if (plantImgRes != mPlantImgRes) {
+            mPlantImageView.setImageResource(plantImgRes);
+            mPlantImgRes = plantImgRes;
+        }
 
-        ((ImageView) findViewById(R.id.plant_detail_image)).setImageResource(plantImgRes);
-        ((TextView) findViewById(R.id.plant_detail_name)).setText(String.valueOf(mPlantId));
-        ((TextView) findViewById(R.id.plant_age_number)).setText(
-                String.valueOf(PlantUtils.getDisplayAgeInt(timeNow - createdAt))
+        mPlantAgeNumberView.setText(
+                String.valueOf(PlantUtils.getDisplayAgeInt(timeNow - mCreatedAt))
         );
-        ((TextView) findViewById(R.id.plant_age_unit)).setText(
-                PlantUtils.getDisplayAgeUnit(this, timeNow - createdAt)
+        mPlantAgeUnitView.setText(
+                PlantUtils.getDisplayAgeUnit(this, timeNow - mCreatedAt)
         );
-        ((TextView) findViewById(R.id.last_watered_number)).setText(
-                String.valueOf(PlantUtils.getDisplayAgeInt(timeNow - wateredAt))
+        mLastWateredNumberView.setText(
+                String.valueOf(PlantUtils.getDisplayAgeInt(timeNow - mWateredAt))
         );
-        ((TextView) findViewById(R.id.last_watered_unit)).setText(
-                PlantUtils.getDisplayAgeUnit(this, timeNow - wateredAt)
+        mLastWateredUnitView.setText(
+                PlantUtils.getDisplayAgeUnit(this, timeNow - mWateredAt)
         );
-        int waterPercent = 100 - ((int) (100 * (timeNow - wateredAt) / PlantUtils.MAX_AGE_WITHOUT_WATER));
-        ((WaterLevelView) findViewById(R.id.water_level)).setValue(waterPercent);
+        mWaterLevelView.setValue(PlantRules.getWaterPercent(timeNow - mWateredAt), true);
+    }
+
+    // Ticks when the next of the two displayed ages goes up by a minute
+    private void scheduleTick() {
+        mTickHandler.removeCallbacks(mTick);
+        if (!mHasPlant || !mResumed) return;
+
+        long timeNow = System.currentTimeMillis();
+        long minute = PlantUtils.MINUTE_MILLISECONDS;
+        long delay = Math.min(
+                minute - (timeNow - mCreatedAt) % minute,
+                minute - (timeNow - mWateredAt) % minute);
+        mTickHandler.postDelayed(mTick, delay);
     }
 
     @Override
-    public void onLoaderReset(Loader<Cursor> loader) {
+    public void onLoaderReset(Loader<PlantRecord> loader) {
 
     }
 
     public void onCutButtonClick(View view) {
-        Uri SINGLE_PLANT_URI = ContentUris.withAppendedId(
-                BASE_CONTENT_URI.buildUpon().appendPath(PATH_PLANTS).build(), mPlantId);
-        getContentResolver().delete(SINGLE_PLANT_URI, null, null);
-
-        // Call to update the widgets - Remove a plant
-        PlantWateringService.startActionUpdatePlantWidgets(this);
+        // Queue the plant to be deleted, this also updates the widgets - Remove a plant
+        PlantRepository.getInstance(this).deletePlant(mPlantId);
 
         finish();
     }
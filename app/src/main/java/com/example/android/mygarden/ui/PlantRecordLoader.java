@@ -0,0 +1,186 @@
+package com.example.android.mygarden.ui;
+
+/*
+* Copyright (C) 2017 The Android Open Source Project
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*  	http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.content.Context;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Handler;
+import android.support.v4.content.AsyncTaskLoader;
+
+import com.example.android.mygarden.provider.PlantChangeObserver;
+import com.example.android.mygarden.provider.PlantContract;
+import com.example.android.mygarden.provider.PlantRecord;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Loads plants as a PlantRecord and keeps it up to date. After the first load only the plants
+ * named in the provider's change notifications are read again and merged into the last record,
+ * and more pages are read from where the last record ends.
+ */
+class PlantRecordLoader extends AsyncTaskLoader<PlantRecord> {
+
+    private final long mPlantId;
+    // The most plants to keep, raised by loadMore
+    private volatile int mLimit;
+    // Rows asked for by loadMore that no load has read yet
+    private final AtomicInteger mMoreRows = new AtomicInteger();
+
+    private final PlantChangeObserver mObserver;
+    private boolean mObserving;
+    // The last loaded record, the base the next change is merged into
+    private volatile PlantRecord mPlants;
+
+    /**
+     * Loads the first plants of the garden in PlantRecord.SORT_ORDER
+     *
+     * @param limit The most plants to load
+     */
+    PlantRecordLoader(Context context, int limit) {
+        this(context, PlantContract.INVALID_PLANT_ID, limit);
+    }
+
+    /**
+     * Loads a single plant, reloaded only when that plant changes
+     */
+    PlantRecordLoader(Context context, long plantId) {
+        this(context, plantId, 1);
+    }
+
+    private PlantRecordLoader(Context context, long plantId, int limit) {
+        super(context);
+        mPlantId = plantId;
+        mLimit = limit;
+        mObserver = new PlantChangeObserver(new Handler(), new Runnable() {
+            @Override
+            public void run() {
+                if (mPlantId == PlantContract.INVALID_PLANT_ID || mObserver.hasChanged(mPlantId)) {
+                    onContentChanged();
+                }
+            }
+        });
+    }
+
+    /**
+     * Reads the next page of plants and appends it to the loaded ones
+     *
+     * @param pageSize The number of plants to read
+     */
+    void loadMore(int pageSize) {
+        mMoreRows.addAndGet(pageSize);
+        onContentChanged();
+    }
+
+    /**
+     * @return The most plants a load returns, a record this size may have more after it
+     */
+    int getLimit() {
+        return mLimit;
+    }
+
+    @Override
+    public PlantRecord loadInBackground() {
+        ContentResolver resolver = getContext().getContentResolver();
+        long[] changedIds = mObserver.takeChangedIds();
+        PlantRecord base = mPlants;
+
+        if (mPlantId != PlantContract.INVALID_PLANT_ID) {
+            return query(resolver, ContentUris.withAppendedId(
+                    PlantContract.PlantEntry.CONTENT_URI, mPlantId));
+        }
+
+        // The limit of the base, and the one this load reads up to
+        int limit = mLimit;
+        int moreRows = mMoreRows.getAndSet(0);
+        mLimit = limit + moreRows;
+
+        if (changedIds == null || base == null) {
+            return query(resolver, PlantContract.buildPlantsPageUri(mLimit));
+        }
+
+        PlantRecord plants = base;
+        if (changedIds.length != 0) {
+            PlantRecord changed = PlantRecord.queryPlants(resolver, changedIds);
+            // A plant deleted from a full page leaves a gap that only a full read can fill
+            if (base.size() >= limit && changed.size() < changedIds.length) {
+                return query(resolver, PlantContract.buildPlantsPageUri(mLimit));
+            }
+            plants = PlantRecord.merge(base, changedIds, changed, limit);
+        }
+
+        // Only a full page can have more plants after it
+        if (moreRows > 0 && plants.size() >= limit) {
+            plants = PlantRecord.concat(plants, PlantRecord.queryPageAfter(resolver, plants, moreRows));
+        }
+        return plants;
+    }
+
+    private static PlantRecord query(ContentResolver resolver, Uri uri) {
+        Cursor cursor = resolver.query(uri, PlantRecord.PROJECTION, null, null,
+                PlantRecord.SORT_ORDER);
+        try {
+            return PlantRecord.from(cursor);
+        } finally {
+            if (cursor != null) cursor.close();
+        }
+    }
+
+    @Override
+    public void deliverResult(PlantRecord plants) {
+        if (isReset()) return;
+        mPlants = plants;
+        if (isStarted()) super.deliverResult(plants);
+    }
+
+    @Override
+    protected void onStartLoading() {
+        // Watch before the first read so no change in between is missed
+        if (!mObserving) {
+            mObserver.register(getContext().getContentResolver());
+            mObserving = true;
+        }
+        if (mPlants != null) deliverResult(mPlants);
+        if (takeContentChanged() || mPlants == null) forceLoad();
+    }
+
+    @Override
+    protected void onStopLoading() {
+        cancelLoad();
+    }
+
+    // A dropped load has still taken its changes and pages, so its record becomes the base of
+    // the next load. Without one the next load reads everything.
+    @Override
+    public void onCanceled(PlantRecord plants) {
+        if (plants != null) mPlants = plants;
+        else mObserver.invalidate();
+    }
+
+    @Override
+    protected void onReset() {
+        onStopLoading();
+        if (mObserving) {
+            mObserver.unregister(getContext().getContentResolver());
+            mObserving = false;
+        }
+        mObserver.invalidate();
+        mPlants = null;
+    }
+}
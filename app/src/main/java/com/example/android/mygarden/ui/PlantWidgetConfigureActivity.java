@@ -0,0 +1,144 @@
+package com.example.android.mygarden.ui;
+
+/*
+* Copyright (C) 2017 The Android Open Source Project
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*  	http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+import android.appwidget.AppWidgetManager;
+import android.content.Context;
+import android.content.Intent;
+import android.os.AsyncTask;
+import android.os.Bundle;
+import android.support.v4.app.LoaderManager;
+import android.support.v4.content.Loader;
+import android.support.v7.app.AppCompatActivity;
+import android.support.v7.widget.GridLayoutManager;
+import android.support.v7.widget.RecyclerView;
+import android.view.View;
+import android.widget.ImageView;
+
+import com.example.android.mygarden.R;
+import com.example.android.mygarden.adapter.PlantListAdapter;
+import com.example.android.mygarden.provider.PlantContract;
+import com.example.android.mygarden.provider.PlantRecord;
+import com.example.android.mygarden.service.PlantWateringService;
+import com.example.android.mygarden.wiget.PlantWidgetPrefs;
+
+/**
+ * Lets the user pin a new widget to one plant of the garden, or to whichever plant most needs
+ * water. Shown by the launcher when the widget is added.
+ */
+public class PlantWidgetConfigureActivity
+        extends AppCompatActivity
+        implements LoaderManager.LoaderCallbacks<PlantRecord>, PlantListAdapter.OnLoadMoreListener {
+
+    private static final int GARDEN_LOADER_ID = 300;
+    private static final int PAGE_SIZE = 100;
+
+    private int mAppWidgetId = AppWidgetManager.INVALID_APPWIDGET_ID;
+
+    private PlantListAdapter mAdapter;
+    private int mPageCount = 1;
+    private boolean mPinning;
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+
+        // Backing out leaves the widget unplaced
+        setResult(RESULT_CANCELED);
+
+        Bundle extras = getIntent().getExtras();
+        if (extras != null) {
+            mAppWidgetId = extras.getInt(AppWidgetManager.EXTRA_APPWIDGET_ID,
+                    AppWidgetManager.INVALID_APPWIDGET_ID);
+        }
+        if (mAppWidgetId == AppWidgetManager.INVALID_APPWIDGET_ID) {
+            finish();
+            return;
+        }
+
+        setContentView(R.layout.activity_widget_configure);
+
+        RecyclerView recyclerView = (RecyclerView) findViewById(R.id.widget_plants_recycler_view);
+        recyclerView.setLayoutManager(new GridLayoutManager(this, 4));
+        mAdapter = new PlantListAdapter(this);
+        mAdapter.setOnLoadMoreListener(this);
+        recyclerView.setAdapter(mAdapter);
+
+        getSupportLoaderManager().initLoader(GARDEN_LOADER_ID, null, this);
+    }
+
+    @Override
+    public Loader<PlantRecord> onCreateLoader(int id, Bundle args) {
+        return new PlantRecordLoader(this, mPageCount * PAGE_SIZE);
+    }
+
+    @Override
+    public void onLoadFinished(Loader<PlantRecord> loader, PlantRecord plants) {
+        boolean hasMore = plants != null && plants.size() >= ((PlantRecordLoader) loader).getLimit();
+        mAdapter.swapPlants(plants, hasMore);
+    }
+
+    @Override
+    public void onLoadMore() {
+        mPageCount++;
+        Loader<PlantRecord> loader = getSupportLoaderManager().getLoader(GARDEN_LOADER_ID);
+        if (loader != null) ((PlantRecordLoader) loader).loadMore(PAGE_SIZE);
+    }
+
+    @Override
+    public void onLoaderReset(Loader<PlantRecord> loader) {
+
+    }
+
+    public void onPlantClick(View view) {
+        ImageView imgView = (ImageView) view.findViewById(R.id.plant_list_item_image);
+        pinPlant((long) imgView.getTag());
+    }
+
+    public void onNeediestClick(View view) {
+        pinPlant(PlantContract.INVALID_PLANT_ID);
+    }
+
+    private void pinPlant(final long plantId) {
+        // Ignore further clicks while the widget is drawn
+        if (mPinning) return;
+        mPinning = true;
+
+        final Context context = getApplicationContext();
+        final int appWidgetId = mAppWidgetId;
+
+        // The launcher does not update a widget that has a configure activity, so draw it here
+        // before returning. The preferences file and the garden are read from disk the first
+        // time, so both happen off the UI thread.
+        new AsyncTask<Void, Void, Void>() {
+            @Override
+            protected Void doInBackground(Void... params) {
+                PlantWidgetPrefs.setPinnedPlantId(context, appWidgetId, plantId);
+                PlantWateringService.updatePlantWidgetNow(context, appWidgetId);
+                return null;
+            }
+
+            @Override
+            protected void onPostExecute(Void result) {
+                Intent resultValue = new Intent();
+                resultValue.putExtra(AppWidgetManager.EXTRA_APPWIDGET_ID, appWidgetId);
+                setResult(RESULT_OK, resultValue);
+                finish();
+            }
+        }.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
+    }
+}
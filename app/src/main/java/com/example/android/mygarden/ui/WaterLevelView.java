@@ -1,11 +1,11 @@
 package com.example.android.mygarden.ui;
 
 
+import android.animation.ValueAnimator;
 import android.content.Context;
 import android.content.res.TypedArray;
 import android.graphics.Canvas;
 import android.graphics.Paint;
-import android.graphics.Path;
 import android.graphics.RectF;
 import android.support.v4.content.ContextCompat;
 import android.util.AttributeSet;
@@ -13,14 +13,21 @@ import android.view.View;
 
 import com.example.android.mygarden.R;
 
-public class WaterLevelView extends View {
+public class WaterLevelView extends View implements ValueAnimator.AnimatorUpdateListener {
+
+    private static final long FILL_ANIMATION_DURATION = 500;
 
     private float mRadius;
     private float mStrokeWidth;
     private int mValue;
+    // The value being drawn, differs from mValue while the fill animates towards it
+    private float mDrawnValue;
+    private float mAnimateFrom;
+    private ValueAnimator mFillAnimator;
+    private final int mColorPrimary;
+    private final int mColorPrimaryLight;
     Context mContext;
     Paint mPaint;
-    Path mPath;
     RectF mCircleRec;
 
     public WaterLevelView(Context context, AttributeSet attrs) {
@@ -34,14 +41,19 @@ public class WaterLevelView extends View {
 
         mRadius = attrArray.getDimension(R.styleable.CircleMeter_radius, 50f);
         mValue = attrArray.getInteger(R.styleable.CircleMeter_value, 100);
+        attrArray.recycle();
+        mDrawnValue = mValue;
         mStrokeWidth = mRadius / 20;
 
+        // Resolved once here rather than on every frame
+        mColorPrimary = ContextCompat.getColor(mContext, R.color.dark_blue);
+        mColorPrimaryLight = ContextCompat.getColor(mContext, R.color.light_blue);
+
         mPaint = new Paint();
         mPaint.setStyle(Paint.Style.STROKE);
         mPaint.setStrokeWidth(mStrokeWidth);
         mPaint.setAntiAlias(true);
 
-        mPath = new Path();
         mCircleRec = new RectF();
         mCircleRec.set(mStrokeWidth, mStrokeWidth, 2 * mRadius, 2 * mRadius);
     }
@@ -49,25 +61,20 @@ public class WaterLevelView extends View {
     @Override
     protected void onDraw(Canvas canvas) {
         super.onDraw(canvas);
-        int colorPrimary = ContextCompat.getColor(mContext, R.color.dark_blue);
-        int colorPrimaryLight = ContextCompat.getColor(mContext, R.color.light_blue);
 
-        mPaint.setColor(colorPrimaryLight);
+        mPaint.setColor(mColorPrimaryLight);
         drawCircle(canvas, mPaint, 0, 360);
 
-        mPaint.setColor(colorPrimary);
-        drawCircle(canvas, mPaint, 270, 360f * mValue / 100);
+        mPaint.setColor(mColorPrimary);
+        drawCircle(canvas, mPaint, 270, 360f * mDrawnValue / 100);
 
     }
 
+    // Draws straight onto the canvas with the cached bounds, so nothing is allocated per frame
     public void drawCircle(Canvas canvas, Paint paint, float start, float sweep) {
-        mPath.reset();
-        if (sweep == 360) {
-            mPath.addCircle(mRadius + mStrokeWidth / 2, mRadius + mStrokeWidth / 2, mRadius - mStrokeWidth / 2, Path.Direction.CCW);
-        } else if (sweep > 0) {
-            mPath.arcTo(mCircleRec, start, sweep, false);
+        if (sweep > 0) {
+            canvas.drawArc(mCircleRec, start, Math.min(sweep, 360), false, paint);
         }
-        canvas.drawPath(mPath, paint);
     }
 
     @Override
@@ -105,8 +112,48 @@ public class WaterLevelView extends View {
     }
 
     public void setValue(int value) {
+        setValue(value, false);
+    }
+
+    /**
+     * Sets the water level, redrawing only if it changed
+     *
+     * @param value   The water level in percent
+     * @param animate Whether to animate the fill from the level currently shown
+     */
+    public void setValue(int value, boolean animate) {
+        if (value == mValue) return;
         mValue = value;
+
+        if (!animate) {
+            if (mFillAnimator != null) mFillAnimator.cancel();
+            mDrawnValue = value;
+            invalidate();
+            return;
+        }
+
+        // The one animator is reused for every change, each frame interpolates from its fraction
+        if (mFillAnimator == null) {
+            mFillAnimator = ValueAnimator.ofFloat(0f, 1f);
+            mFillAnimator.setDuration(FILL_ANIMATION_DURATION);
+            mFillAnimator.addUpdateListener(this);
+        } else {
+            mFillAnimator.cancel();
+        }
+        mAnimateFrom = mDrawnValue;
+        mFillAnimator.start();
+    }
+
+    @Override
+    public void onAnimationUpdate(ValueAnimator animation) {
+        mDrawnValue = mAnimateFrom + (mValue - mAnimateFrom) * animation.getAnimatedFraction();
         invalidate();
     }
 
+    @Override
+    protected void onDetachedFromWindow() {
+        if (mFillAnimator != null) mFillAnimator.cancel();
+        super.onDetachedFromWindow();
+    }
+
 }
\ No newline at end of file
@@ -0,0 +1,78 @@
+package com.example.android.mygarden.utils;
+
+/*
+* Copyright (C) 2017 The Android Open Source Project
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*  	http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+import android.os.Handler;
+import android.os.Looper;
+
+/**
+ * A clock that ticks on the main thread at the moments it is told to, rather than on a fixed
+ * period. Owners schedule the next tick for the next time something they show will change,
+ * such as PlantUtils.getNextTransitionTime, so nothing runs while nothing changes.
+ */
+public class GardenClock {
+
+    /**
+     * Listener called on the main thread at each tick
+     */
+    public interface OnTickListener {
+        void onTick(long timeNow);
+    }
+
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private final OnTickListener mListener;
+    private boolean mRunning;
+
+    private final Runnable mTick = new Runnable() {
+        @Override
+        public void run() {
+            if (mRunning) mListener.onTick(System.currentTimeMillis());
+        }
+    };
+
+    public GardenClock(OnTickListener listener) {
+        mListener = listener;
+    }
+
+    /**
+     * Starts the clock and ticks straight away, to catch up with anything that changed while stopped
+     */
+    public void start() {
+        mRunning = true;
+        mHandler.removeCallbacks(mTick);
+        mHandler.post(mTick);
+    }
+
+    /**
+     * Stops the clock and drops the scheduled tick
+     */
+    public void stop() {
+        mRunning = false;
+        mHandler.removeCallbacks(mTick);
+    }
+
+    /**
+     * Replaces the scheduled tick with one at the given time
+     *
+     * @param time The time in milliseconds, or Long.MAX_VALUE for no tick
+     */
+    public void scheduleAt(long time) {
+        mHandler.removeCallbacks(mTick);
+        if (!mRunning || time == Long.MAX_VALUE) return;
+        mHandler.postDelayed(mTick, Math.max(0, time - System.currentTimeMillis()));
+    }
+}
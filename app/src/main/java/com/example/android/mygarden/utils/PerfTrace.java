@@ -0,0 +1,81 @@
+package com.example.android.mygarden.utils;
+
+/*
+* Copyright (C) 2017 The Android Open Source Project
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*  	http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+import android.support.v4.os.TraceCompat;
+
+import com.example.android.mygarden.core.LatencyHistogram;
+import com.example.android.mygarden.core.LatencyRegistry;
+
+/**
+ * Times the hot paths of the app. Each section shows up by name in systrace and is counted
+ * into a latency histogram, read back with dumpsys on the provider or through getRegistry().
+ * <p>
+ * Use as begin, then end in a finally block, on the same thread.
+ */
+public final class PerfTrace {
+
+    private static final LatencyRegistry sRegistry = new LatencyRegistry();
+
+    public static final LatencyHistogram PROVIDER_QUERY = sRegistry.get("PlantContentProvider.query");
+    public static final LatencyHistogram PROVIDER_INSERT = sRegistry.get("PlantContentProvider.insert");
+    public static final LatencyHistogram PROVIDER_UPDATE = sRegistry.get("PlantContentProvider.update");
+    public static final LatencyHistogram PROVIDER_DELETE = sRegistry.get("PlantContentProvider.delete");
+
+    // The watering service actions, run by PlantWateringService or PlantJobService
+    public static final LatencyHistogram WATER_PLANT = sRegistry.get("PlantWateringService.waterPlant");
+    public static final LatencyHistogram WATER_PLANTS = sRegistry.get("PlantWateringService.waterPlants");
+    public static final LatencyHistogram UPDATE_PLANT_WIDGETS = sRegistry.get("PlantWateringService.updatePlantWidgets");
+
+    public static final LatencyHistogram FACTORY_DATA_SET_CHANGED = sRegistry.get("GridRemoteViewsFactory.onDataSetChanged");
+    public static final LatencyHistogram FACTORY_GET_VIEW_AT = sRegistry.get("GridRemoteViewsFactory.getViewAt");
+
+    public static final LatencyHistogram ADAPTER_BIND = sRegistry.get("PlantListAdapter.onBindViewHolder");
+    public static final LatencyHistogram ADAPTER_BIND_IMAGE = sRegistry.get("PlantListAdapter.onBindViewHolder.image");
+
+    private PerfTrace() {
+    }
+
+    /**
+     * Starts a section
+     *
+     * @param histogram The histogram the section is counted into, its name is the trace name
+     * @return The start time, to pass to end
+     */
+    public static long begin(LatencyHistogram histogram) {
+        TraceCompat.beginSection(histogram.getName());
+        return System.nanoTime();
+    }
+
+    /**
+     * Ends the section started last on this thread
+     *
+     * @param histogram The histogram passed to begin
+     * @param start     The time begin returned
+     */
+    public static void end(LatencyHistogram histogram, long start) {
+        histogram.record(System.nanoTime() - start);
+        TraceCompat.endSection();
+    }
+
+    /**
+     * @return Every histogram of the process, for dumps and tests
+     */
+    public static LatencyRegistry getRegistry() {
+        return sRegistry;
+    }
+}
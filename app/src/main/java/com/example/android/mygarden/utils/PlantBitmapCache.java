@@ -0,0 +1,199 @@
+package com.example.android.mygarden.utils;
+
+/*
+* Copyright (C) 2017 The Android Open Source Project
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*  	http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+import android.app.ActivityManager;
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.AsyncTask;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.v4.util.LruCache;
+import android.view.ViewGroup;
+import android.widget.ImageView;
+
+import com.example.android.mygarden.R;
+
+import java.lang.ref.WeakReference;
+
+/**
+ * Decodes the plant images at the size they are shown at rather than their full source size,
+ * off the UI thread, and keeps the results in an LRU cache shared by every screen. Entries are
+ * keyed by resource ID and target size and the cache is given an eighth of the app's memory
+ * class.
+ */
+public final class PlantBitmapCache {
+
+    private static PlantBitmapCache sInstance;
+
+    private final Resources mResources;
+    private final LruCache<Long, Bitmap> mCache;
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    private PlantBitmapCache(Context context) {
+        Context appContext = context.getApplicationContext();
+        mResources = appContext.getResources();
+
+        ActivityManager activityManager =
+                (ActivityManager) appContext.getSystemService(Context.ACTIVITY_SERVICE);
+        int budgetBytes = activityManager.getMemoryClass() * 1024 * 1024 / 8;
+        mCache = new LruCache<Long, Bitmap>(budgetBytes) {
+            @Override
+            protected int sizeOf(Long key, Bitmap bitmap) {
+                return bitmap.getByteCount();
+            }
+        };
+
+        appContext.registerComponentCallbacks(new ComponentCallbacks2() {
+            @Override
+            public void onTrimMemory(int level) {
+                // Everything can be decoded again, so give memory back as soon as asked
+                if (level >= TRIM_MEMORY_MODERATE) mCache.evictAll();
+                else if (level >= TRIM_MEMORY_UI_HIDDEN) mCache.trimToSize(mCache.maxSize() / 2);
+            }
+
+            @Override
+            public void onConfigurationChanged(Configuration newConfig) {
+            }
+
+            @Override
+            public void onLowMemory() {
+                mCache.evictAll();
+            }
+        });
+    }
+
+    public static synchronized PlantBitmapCache getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new PlantBitmapCache(context);
+        }
+        return sInstance;
+    }
+
+    /**
+     * Shows an image resource in a view, decoded to the view's layout size. A cached bitmap is
+     * shown straight away, otherwise the view is cleared until the decode finishes. Views
+     * without a fixed layout size get the resource as it is.
+     *
+     * @param imageView The view, call from the UI thread
+     * @param resId     The drawable resource of the image
+     */
+    public void loadInto(ImageView imageView, int resId) {
+        loadInto(imageView, resId, true);
+    }
+
+    /**
+     * Like loadInto(ImageView, int), for a view that already shows the same item and only needs
+     * its image changed, so the previous image can stay up until the new one is decoded
+     *
+     * @param clearWhileLoading Whether to clear the view while the image is decoded
+     */
+    public void loadInto(ImageView imageView, int resId, boolean clearWhileLoading) {
+        ViewGroup.LayoutParams params = imageView.getLayoutParams();
+        int width = params != null ? params.width : 0;
+        int height = params != null ? params.height : 0;
+        if (width <= 0 || height <= 0) {
+            imageView.setTag(R.id.plant_bitmap_key, null);
+            imageView.setImageResource(resId);
+            return;
+        }
+
+        Long key = buildKey(resId, width, height);
+        imageView.setTag(R.id.plant_bitmap_key, key);
+
+        Bitmap bitmap = mCache.get(key);
+        if (bitmap != null) {
+            imageView.setImageBitmap(bitmap);
+            return;
+        }
+
+        if (clearWhileLoading) imageView.setImageDrawable(null);
+        AsyncTask.THREAD_POOL_EXECUTOR.execute(new DecodeTask(imageView, key, resId, width, height));
+    }
+
+    // Resource IDs take the top 32 bits, the width and height 16 bits each
+    private static Long buildKey(int resId, int width, int height) {
+        return ((long) resId << 32) | ((long) Math.min(width, 0xffff) << 16) | Math.min(height, 0xffff);
+    }
+
+    /**
+     * Decodes a resource to at least the given size, sampled down by a power of two
+     *
+     * @return The bitmap, or null if the resource is not a bitmap
+     */
+    private Bitmap decode(int resId, int width, int height) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        // The images are sized in pixels here, not scaled up for the screen density first
+        options.inScaled = false;
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeResource(mResources, resId, options);
+        if (options.outWidth <= 0 || options.outHeight <= 0) return null;
+
+        int sampleSize = 1;
+        while (options.outWidth / (sampleSize * 2) >= width
+                && options.outHeight / (sampleSize * 2) >= height) {
+            sampleSize *= 2;
+        }
+
+        options.inJustDecodeBounds = false;
+        options.inSampleSize = sampleSize;
+        return BitmapFactory.decodeResource(mResources, resId, options);
+    }
+
+    // Decodes one image and hands it to its view, unless the view has moved on to another image
+    private class DecodeTask implements Runnable {
+
+        private final WeakReference<ImageView> mImageViewRef;
+        private final Long mKey;
+        private final int mResId;
+        private final int mWidth;
+        private final int mHeight;
+
+        DecodeTask(ImageView imageView, Long key, int resId, int width, int height) {
+            mImageViewRef = new WeakReference<ImageView>(imageView);
+            mKey = key;
+            mResId = resId;
+            mWidth = width;
+            mHeight = height;
+        }
+
+        @Override
+        public void run() {
+            // Another view may have asked for the same image meanwhile
+            Bitmap bitmap = mCache.get(mKey);
+            if (bitmap == null) {
+                bitmap = decode(mResId, mWidth, mHeight);
+                if (bitmap != null) mCache.put(mKey, bitmap);
+            }
+
+            final Bitmap result = bitmap;
+            mMainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    ImageView imageView = mImageViewRef.get();
+                    if (imageView == null || !mKey.equals(imageView.getTag(R.id.plant_bitmap_key))) return;
+                    if (result != null) imageView.setImageBitmap(result);
+                    else imageView.setImageResource(mResId);
+                }
+            });
+        }
+    }
+}
@@ -16,28 +16,31 @@ package com.example.android.mygarden.utils;
 * limitations under the License.
 */
 
+import android.content.ComponentCallbacks;
 import android.content.Context;
+import android.content.res.Configuration;
 import android.content.res.Resources;
 import android.content.res.TypedArray;
 
 import com.example.android.mygarden.R;
+import com.example.android.mygarden.core.AgeUnit;
+import com.example.android.mygarden.core.GardenStateEngine;
+import com.example.android.mygarden.core.PlantRules;
+import com.example.android.mygarden.core.PlantSize;
+import com.example.android.mygarden.core.PlantStatus;
 
 public class PlantUtils {
 
-    private static final long MINUTE_MILLISECONDS = 1000 * 60;
-    private static final long HOUR_MILLISECONDS = MINUTE_MILLISECONDS * 60;
-    private static final long DAY_MILLISECONDS = HOUR_MILLISECONDS * 24;
+    // The garden rules live in the garden-core module, this class maps them onto resources
+    public static final long MINUTE_MILLISECONDS = PlantRules.MINUTE_MILLISECONDS;
 
-    public static final long MIN_AGE_BETWEEN_WATER = HOUR_MILLISECONDS * 2; // can water every 2 hours
-    static final long DANGER_AGE_WITHOUT_WATER = HOUR_MILLISECONDS * 6; // in danger after 6 hours
-    public static final long MAX_AGE_WITHOUT_WATER = HOUR_MILLISECONDS * 12; // plants die after 12 hours
-    static final long TINY_AGE = DAY_MILLISECONDS * 0; // plants start tiny
-    static final long JUVENILE_AGE = DAY_MILLISECONDS * 1; // 1 day old
-    static final long FULLY_GROWN_AGE = DAY_MILLISECONDS * 2; // 2 days old
+    public static final long MIN_AGE_BETWEEN_WATER = PlantRules.MIN_AGE_BETWEEN_WATER;
+    public static final long MAX_AGE_WITHOUT_WATER = PlantRules.MAX_AGE_WITHOUT_WATER;
 
-    public enum PlantStatus {ALIVE, DYING, DEAD};
-
-    public enum PlantSize {TINY, JUVENILE, FULLY_GROWN};
+    // Image resources indexed by [type][status][size], built once per process from arrays.xml
+    // and dropped on configuration changes so the next lookup rebuilds it
+    private static volatile int[][][] sPlantImageTable;
+    private static boolean sConfigCallbacksRegistered;
 
     /**
      * Returns the corresponding image resource of the plant given the plant's age and
@@ -48,21 +51,23 @@ public class PlantUtils {
      * @return Image Resource to the correct plant image
      */
     public static int getPlantImageRes(Context context, long plantAge, long waterAge, int type) {
-        //check if plant is dead first
-        PlantStatus status = PlantStatus.ALIVE;
-        if (waterAge > MAX_AGE_WITHOUT_WATER) status = PlantStatus.DEAD;
-        else if (waterAge > DANGER_AGE_WITHOUT_WATER) status = PlantStatus.DYING;
-
-        //Update image if old enough
-        if (plantAge > FULLY_GROWN_AGE) {
-            return getPlantImgRes(context, type, status, PlantSize.FULLY_GROWN);
-        } else if (plantAge > JUVENILE_AGE) {
-            return getPlantImgRes(context, type, status, PlantSize.JUVENILE);
-        } else if (plantAge > TINY_AGE) {
-            return getPlantImgRes(context, type, status, PlantSize.TINY);
-        } else {
-            return R.drawable.empty_pot;
-        }
+        PlantSize size = PlantRules.getPlantSize(plantAge);
+        if (size == null) return R.drawable.empty_pot;
+        return getPlantImgRes(context, type, PlantRules.getPlantStatus(waterAge), size);
+    }
+
+    /**
+     * Returns the corresponding image resource of the plant given its packed state
+     *
+     * @param context   The context
+     * @param stateCode A state code from GardenStateEngine
+     * @return Image Resource to the correct plant image
+     */
+    public static int getPlantImageRes(Context context, int stateCode) {
+        PlantSize size = GardenStateEngine.getSize(stateCode);
+        if (size == null) return R.drawable.empty_pot;
+        return getPlantImgRes(context, GardenStateEngine.getType(stateCode),
+                GardenStateEngine.getStatus(stateCode), size);
     }
 
     /**
@@ -76,15 +81,86 @@ public class PlantUtils {
      * @return Image Resource to the correct plant image
      */
     public static int getPlantImgRes(Context context, int type, PlantStatus status, PlantSize size) {
+        return getPlantImageTable(context)[type][status.ordinal()][size.ordinal()];
+    }
+
+    /**
+     * Returns the lookup table of plant image resources, building it on first use
+     *
+     * @param context The context
+     * @return Image resources indexed by [type][PlantStatus.ordinal()][PlantSize.ordinal()]
+     */
+    private static int[][][] getPlantImageTable(Context context) {
+        int[][][] table = sPlantImageTable;
+        if (table != null) return table;
+        synchronized (PlantUtils.class) {
+            if (sPlantImageTable == null) {
+                registerConfigCallbacks(context);
+                sPlantImageTable = buildPlantImageTable(context);
+            }
+            return sPlantImageTable;
+        }
+    }
+
+    private static int[][][] buildPlantImageTable(Context context) {
         Resources res = context.getResources();
+        String packageName = context.getPackageName();
+        PlantStatus[] statuses = PlantStatus.values();
+        PlantSize[] sizes = PlantSize.values();
         TypedArray plantTypes = res.obtainTypedArray(R.array.plant_types);
-        String resName = plantTypes.getString(type);
-        if (status == PlantStatus.DYING) resName += "_danger";
-        else if (status == PlantStatus.DEAD) resName += "_dead";
-        if (size == PlantSize.TINY) resName += "_1";
-        else if (size == PlantSize.JUVENILE) resName += "_2";
-        else if (size == PlantSize.FULLY_GROWN) resName += "_3";
-        return context.getResources().getIdentifier(resName, "drawable", context.getPackageName());
+        try {
+            int[][][] table = new int[plantTypes.length()][statuses.length][sizes.length];
+            for (int type = 0; type < table.length; type++) {
+                String typeName = plantTypes.getString(type);
+                for (PlantStatus status : statuses) {
+                    for (PlantSize size : sizes) {
+                        String resName = typeName + getStatusSuffix(status) + getSizeSuffix(size);
+                        table[type][status.ordinal()][size.ordinal()] =
+                                res.getIdentifier(resName, "drawable", packageName);
+                    }
+                }
+            }
+            return table;
+        } finally {
+            plantTypes.recycle();
+        }
+    }
+
+    private static String getStatusSuffix(PlantStatus status) {
+        if (status == PlantStatus.DYING) return "_danger";
+        else if (status == PlantStatus.DEAD) return "_dead";
+        return "";
+    }
+
+    private static String getSizeSuffix(PlantSize size) {
+        if (size == PlantSize.TINY) return "_1";
+        else if (size == PlantSize.JUVENILE) return "_2";
+        return "_3";
+    }
+
+    // Resource names can resolve differently per configuration, so forget the table on change
+    private static void registerConfigCallbacks(Context context) {
+        if (sConfigCallbacksRegistered) return;
+        context.getApplicationContext().registerComponentCallbacks(new ComponentCallbacks() {
+            @Override
+            public void onConfigurationChanged(Configuration newConfig) {
+                sPlantImageTable = null;
+            }
+
+            @Override
+            public void onLowMemory() {
+            }
+        });
+        sConfigCallbacksRegistered = true;
+    }
+
+    /**
+     * Returns the next time the plant's widget image or watering button will change
+     *
+     * @see PlantRules#getNextTransitionTime(long, long, long)
+     */
+    public static long getNextTransitionTime(long createdAt, long wateredAt, long timeNow) {
+        return PlantRules.getNextTransitionTime(createdAt, wateredAt, timeNow);
     }
 
     /**
@@ -98,6 +174,7 @@ public class PlantUtils {
         Resources res = context.getResources();
         TypedArray plantTypes = res.obtainTypedArray(R.array.plant_types);
         String resName = plantTypes.getString(type);
+        plantTypes.recycle();
         int resId = context.getResources().getIdentifier(resName, "string", context.getPackageName());
         try {
             return context.getResources().getString(resId);
@@ -113,11 +190,7 @@ public class PlantUtils {
      * @return The value of either days, hours or minutes
      */
     public static int getDisplayAgeInt(long milliSeconds) {
-        int days = (int) (milliSeconds / DAY_MILLISECONDS);
-        if (days >= 1) return days;
-        int hours = (int) (milliSeconds / HOUR_MILLISECONDS);
-        if (hours >= 1) return hours;
-        return (int) (milliSeconds / MINUTE_MILLISECONDS);
+        return PlantRules.getDisplayAgeInt(milliSeconds);
     }
 
     /**
@@ -128,10 +201,9 @@ public class PlantUtils {
      * @return The unit of either days, hours or minutes
      */
     public static String getDisplayAgeUnit(Context context, long milliSeconds) {
-        int days = (int) (milliSeconds / DAY_MILLISECONDS);
-        if (days >= 1) return context.getString(R.string.days);
-        int hours = (int) (milliSeconds / HOUR_MILLISECONDS);
-        if (hours >= 1) return context.getString(R.string.hours);
+        AgeUnit unit = PlantRules.getDisplayAgeUnit(milliSeconds);
+        if (unit == AgeUnit.DAYS) return context.getString(R.string.days);
+        if (unit == AgeUnit.HOURS) return context.getString(R.string.hours);
         return context.getString(R.string.minutes);
     }
 }
@@ -0,0 +1,39 @@
+package com.example.android.mygarden.wiget;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+
+import com.example.android.mygarden.provider.PlantContract;
+import com.example.android.mygarden.service.PlantWateringService;
+
+/**
+ * Receives the widget water button and the scheduled widget refreshes. Declared as not exported,
+ * unlike PlantWidgetProvider which has to take the framework's widget broadcasts, so only this
+ * app's own pending intents can water a plant or force a refresh.
+ * <p>
+ * Handled here rather than by waking the service directly, so that from Lollipop they are queued
+ * as jobs.
+ */
+public class PlantWidgetActionReceiver extends BroadcastReceiver {
+
+    /**
+     * @return An intent for this receiver with the given action
+     */
+    public static Intent buildIntent(Context context, String action) {
+        Intent intent = new Intent(context, PlantWidgetActionReceiver.class);
+        intent.setAction(action);
+        return intent;
+    }
+
+    @Override
+    public void onReceive(Context context, Intent intent) {
+        String action = intent.getAction();
+        if (PlantWateringService.ACTION_WATER_PLANT.equals(action)) {
+            long plantId = intent.getLongExtra(PlantWateringService.EXTRA_PLANT_ID, PlantContract.INVALID_PLANT_ID);
+            PlantWateringService.startActionWaterPlant(context, plantId);
+        } else if (PlantWateringService.ACTION_UPDATE_PLANT_WIDGETS.equals(action)) {
+            PlantWateringService.startActionUpdatePlantWidgets(context);
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.android.mygarden.wiget;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import com.example.android.mygarden.provider.PlantContract;
+
+/**
+ * Persists the plant each widget is pinned to. A widget without a pin, or pinned to
+ * INVALID_PLANT_ID, shows whichever plant most needs water.
+ * <p>
+ * The first read of the preferences file touches the disk, so call from a background thread.
+ */
+public class PlantWidgetPrefs {
+
+    private static final String PREFS_NAME = "com.example.android.mygarden.wiget.PlantWidgetProvider";
+    private static final String KEY_PLANT_PREFIX = "plant_";
+
+    private PlantWidgetPrefs() {
+    }
+
+    private static SharedPreferences getPrefs(Context context) {
+        return context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+
+    /**
+     * @return The ID of the plant the widget is pinned to, or INVALID_PLANT_ID for the neediest
+     */
+    public static long getPinnedPlantId(Context context, int appWidgetId) {
+        return getPrefs(context).getLong(KEY_PLANT_PREFIX + appWidgetId, PlantContract.INVALID_PLANT_ID);
+    }
+
+    /**
+     * Pins a widget to a plant, pass INVALID_PLANT_ID to follow the neediest plant
+     */
+    public static void setPinnedPlantId(Context context, int appWidgetId, long plantId) {
+        getPrefs(context).edit().putLong(KEY_PLANT_PREFIX + appWidgetId, plantId).apply();
+    }
+
+    /**
+     * Forgets the pins of widgets that were removed
+     */
+    public static void removePins(Context context, int[] appWidgetIds) {
+        SharedPreferences.Editor editor = getPrefs(context).edit();
+        for (int appWidgetId : appWidgetIds) {
+            editor.remove(KEY_PLANT_PREFIX + appWidgetId);
+        }
+        editor.apply();
+    }
+}
@@ -5,10 +5,13 @@ import android.appwidget.AppWidgetManager;
 import android.appwidget.AppWidgetProvider;
 import android.content.Context;
 import android.content.Intent;
+import android.os.AsyncTask;
 import android.os.Build;
 import android.os.Bundle;
 import android.support.annotation.RequiresApi;
 import android.util.Log;
+import android.util.SparseArray;
+import android.util.SparseBooleanArray;
 import android.view.View;
 import android.widget.RemoteViews;
 
@@ -24,25 +27,96 @@ import com.example.android.mygarden.ui.PlantDetailActivity;
  */
 public class PlantWidgetProvider extends AppWidgetProvider {
 
+    // Widgets at least this wide show the whole garden instead of a single plant
+    private static final int GARDEN_GRID_MIN_WIDTH = 300;
+
+    // What each widget last showed, so that a refresh that would draw the same again is skipped.
+    // Kept in memory only, so after a restart every widget is drawn in full once more.
+    private static final SparseArray<RenderedState> sRenderedStates = new SparseArray<RenderedState>();
+
+    // Whether each widget shows the garden grid, from its last options, guarded by sRenderedStates
+    private static final SparseBooleanArray sGardenGrids = new SparseBooleanArray();
+
+    /**
+     * Draws one widget. A widget showing the same as last time is skipped entirely, and one
+     * still showing the same plant only gets the image and watering button that changed.
+     *
+     * @return true if the widget shows the garden grid rather than a single plant
+     */
     @RequiresApi(api = Build.VERSION_CODES.JELLY_BEAN)
-    static void updateAppWidget(Context context, AppWidgetManager appWidgetManager,
+    public static boolean updateAppWidget(Context context, AppWidgetManager appWidgetManager,
                                 int imgRes, long plantId, boolean canWater, int appWidgetId) {
-        
-        // Get current width to decide on single plant vs garden grid view
-        Bundle options = appWidgetManager.getAppWidgetOptions(appWidgetId);
-        int width = options.getInt(AppWidgetManager.OPTION_APPWIDGET_MIN_WIDTH);
-        
+
+        boolean gardenGrid = isGardenGrid(appWidgetManager, appWidgetId);
+
+        // The grid draws its own plants, so nothing else is part of its state
+        RenderedState state = gardenGrid
+                ? new RenderedState(true, PlantContract.INVALID_PLANT_ID, 0)
+                : new RenderedState(false, plantId, 31 * imgRes + (canWater ? 1 : 0));
+
+        RenderedState lastState;
+        synchronized (sRenderedStates) {
+            lastState = sRenderedStates.get(appWidgetId);
+            sRenderedStates.put(appWidgetId, state);
+        }
+
+        if (state.sameLayout(lastState)) {
+            if (state.contentHash != lastState.contentHash) {
+                appWidgetManager.partiallyUpdateAppWidget(appWidgetId,
+                        getSinglePlantChanges(context, imgRes, canWater));
+            }
+            return gardenGrid;
+        }
+
         RemoteViews views;
-        
-        if ( width < 300 )
-            views = getSinglePlantRemoteView(context, imgRes, plantId, canWater);
+
+        if (gardenGrid)
+            views = getGardenGridRemoteView(context, appWidgetId);
         else
-            views = getGardenGridRemoteView(context);
-        
+            views = getSinglePlantRemoteView(context, imgRes, plantId, canWater, appWidgetId);
+
         appWidgetManager.updateAppWidget(appWidgetId, views);
+        return gardenGrid;
+    }
+
+    // Reads the widget width once and then only again when its options change
+    @RequiresApi(api = Build.VERSION_CODES.JELLY_BEAN)
+    private static boolean isGardenGrid(AppWidgetManager appWidgetManager, int appWidgetId) {
+        synchronized (sRenderedStates) {
+            int index = sGardenGrids.indexOfKey(appWidgetId);
+            if (index >= 0) return sGardenGrids.valueAt(index);
+        }
+        boolean gardenGrid = isGardenGrid(appWidgetManager.getAppWidgetOptions(appWidgetId));
+        synchronized (sRenderedStates) {
+            sGardenGrids.put(appWidgetId, gardenGrid);
+        }
+        return gardenGrid;
+    }
+
+    private static boolean isGardenGrid(Bundle options) {
+        // Get current width to decide on single plant vs garden grid view
+        return options.getInt(AppWidgetManager.OPTION_APPWIDGET_MIN_WIDTH) >= GARDEN_GRID_MIN_WIDTH;
+    }
+
+    // Forgets what the widgets showed, so they are drawn in full next time
+    private static void forgetWidgets(int[] appWidgetIds, boolean options) {
+        synchronized (sRenderedStates) {
+            for (int appWidgetId : appWidgetIds) {
+                sRenderedStates.remove(appWidgetId);
+                if (options) sGardenGrids.delete(appWidgetId);
+            }
+        }
+    }
+
+    // Only the parts of a single plant widget that change as the plant grows and is watered
+    private static RemoteViews getSinglePlantChanges(Context context, int imgRes, boolean canWater) {
+        RemoteViews views = new RemoteViews(context.getPackageName(), R.layout.plant_widget_provider);
+        views.setImageViewResource(R.id.widget_plant_image, imgRes);
+        views.setViewVisibility(R.id.widget_water_button, canWater ? View.VISIBLE : View.INVISIBLE);
+        return views;
     }
 
-    private static RemoteViews getSinglePlantRemoteView(Context context, int imgRes, long plantId, boolean canWater) {
+    private static RemoteViews getSinglePlantRemoteView(Context context, int imgRes, long plantId, boolean canWater, int appWidgetId) {
 
         Intent intent;
 
@@ -55,7 +129,8 @@ public class PlantWidgetProvider extends AppWidgetProvider {
             intent.putExtra(PlantDetailActivity.EXTRA_PLANT_ID, plantId);
         }
 
-        PendingIntent pendingIntent = PendingIntent.getActivity(context, 0, intent, PendingIntent.FLAG_UPDATE_CURRENT);
+        // Widgets can show different plants, so each gets its own pending intents
+        PendingIntent pendingIntent = PendingIntent.getActivity(context, appWidgetId, intent, PendingIntent.FLAG_UPDATE_CURRENT);
 
         RemoteViews views = new RemoteViews(context.getPackageName(), R.layout.plant_widget_provider);      // Construct the RemoteViews object
 
@@ -74,14 +149,14 @@ public class PlantWidgetProvider extends AppWidgetProvider {
 
         views.setOnClickPendingIntent(R.id.widget_plant_image, pendingIntent);
 
-        // Add the wateringservice click handler
-        Intent wateringIntent = new Intent(context, PlantWateringService.class);
-        wateringIntent.setAction(PlantWateringService.ACTION_WATER_PLANT);
+        // Add the watering click handler - delivered to the unexported PlantWidgetActionReceiver,
+        // which hands it to the watering service
+        Intent wateringIntent = PlantWidgetActionReceiver.buildIntent(context, PlantWateringService.ACTION_WATER_PLANT);
         wateringIntent.putExtra(PlantWateringService.EXTRA_PLANT_ID, plantId);
 
-        PendingIntent wateringPendingIntent = PendingIntent.getService(
+        PendingIntent wateringPendingIntent = PendingIntent.getBroadcast(
                 context,
-                0,
+                appWidgetId,
                 wateringIntent,
                 PendingIntent.FLAG_UPDATE_CURRENT);
 
@@ -90,7 +165,7 @@ public class PlantWidgetProvider extends AppWidgetProvider {
         return views;
     }
 
-    private static RemoteViews getGardenGridRemoteView(Context context) {
+    private static RemoteViews getGardenGridRemoteView(Context context, int appWidgetId) {
 
         RemoteViews views = new RemoteViews(context.getPackageName(), R.layout.widget_grid_view);
 
@@ -104,7 +179,7 @@ public class PlantWidgetProvider extends AppWidgetProvider {
 
         Intent appIntent = new Intent(context, PlantDetailActivity.class);
 
-        PendingIntent appPendingIntent = PendingIntent.getActivity(context, 0, appIntent, PendingIntent.FLAG_UPDATE_CURRENT);
+        PendingIntent appPendingIntent = PendingIntent.getActivity(context, appWidgetId, appIntent, PendingIntent.FLAG_UPDATE_CURRENT);
 
         views.setPendingIntentTemplate(R.id.widget_grid_view, appPendingIntent);
 
@@ -117,28 +192,33 @@ public class PlantWidgetProvider extends AppWidgetProvider {
 
     @Override
     public void onUpdate(Context context, AppWidgetManager appWidgetManager, int[] appWidgetIds) {
+        // The host asks for these widgets again, so draw them in full
+        forgetWidgets(appWidgetIds, false);
         // There may be multiple widgets active, so update all of them
         PlantWateringService.startActionUpdatePlantWidgets(context);
     }
 
-    // This is a static method - Which means we can call it from anywhere and pass parameters to it
-
-    @RequiresApi(api = Build.VERSION_CODES.JELLY_BEAN)
-    public static void updatePlantWidgets(Context context, AppWidgetManager appWidgetManager, int imgRes, long plantId, boolean canWater, int[] appWidgetIds) {
-        for (int appWidgetId : appWidgetIds ) {
-            updateAppWidget( context, appWidgetManager, imgRes, plantId, canWater, appWidgetId );
-        }
-    }
-
     @Override
     public void onAppWidgetOptionsChanged(Context context, AppWidgetManager appWidgetManager, int appWidgetId, Bundle newOptions) {
+        synchronized (sRenderedStates) {
+            sGardenGrids.put(appWidgetId, isGardenGrid(newOptions));
+        }
         PlantWateringService.startActionUpdatePlantWidgets(context);
         super.onAppWidgetOptionsChanged(context, appWidgetManager, appWidgetId, newOptions);
     }
 
     @Override
-    public void onDeleted(Context context, int[] appWidgetIds) {
-        // Perform any action when one or more AppWidget instances have been deleted
+    public void onDeleted(final Context context, final int[] appWidgetIds) {
+        forgetWidgets(appWidgetIds, true);
+
+        // Drop the pins off the UI thread, the preferences may not have been read from disk yet
+        final Context appContext = context.getApplicationContext();
+        AsyncTask.THREAD_POOL_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                PlantWidgetPrefs.removePins(appContext, appWidgetIds);
+            }
+        });
     }
 
     @Override
@@ -150,4 +230,22 @@ public class PlantWidgetProvider extends AppWidgetProvider {
     public void onDisabled(Context context) {
         // Enter relevant functionality for when the last widget is disabled
     }
+
+    // What a widget was last drawn with: its layout, the plant it shows and a hash of the rest
+
+    private static class RenderedState {
+        final boolean gardenGrid;
+        final long plantId;
+        final int contentHash;
+
+        RenderedState(boolean gardenGrid, long plantId, int contentHash) {
+            this.gardenGrid = gardenGrid;
+            this.plantId = plantId;
+            this.contentHash = contentHash;
+        }
+
+        boolean sameLayout(RenderedState other) {
+            return other != null && gardenGrid == other.gardenGrid && plantId == other.plantId;
+        }
+    }
 }
@@ -0,0 +1,164 @@
+package com.example.android.mygarden.core;
+
+/*
+* Copyright (C) 2017 The Android Open Source Project
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*  	http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times the garden rules over a whole garden, as the grid and the widgets apply them to every
+ * plant on each refresh. Gardens are generated from a fixed seed so runs are comparable.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class GardenBenchmark {
+
+    @Param({"10", "1000", "100000", "1000000"})
+    public int gardenSize;
+
+    private long mTimeNow;
+    private long[] mCreatedAt;
+    private long[] mWateredAt;
+    private int[] mTypes;
+
+    // The garden in garden order, and a batch of changed plants to merge into it
+    private long[] mSortedCreatedAt;
+    private long[] mSortedIds;
+    private long[] mChangedCreatedAt;
+    private long[] mChangedIds;
+
+    // Plants changed at once, as a batch watering or import reports them
+    private static final int CHANGED_PLANTS = 100;
+
+    @Setup
+    public void plantGarden() {
+        Random random = new Random(42);
+        mTimeNow = 1500000000000L;
+        mCreatedAt = new long[gardenSize];
+        mWateredAt = new long[gardenSize];
+        mTypes = new int[gardenSize];
+        for (int i = 0; i < gardenSize; i++) {
+            // Planted up to three days ago, watered since then, some dying or dead
+            mCreatedAt[i] = mTimeNow - (long) (random.nextDouble() * 3 * PlantRules.DAY_MILLISECONDS);
+            long sincePlanted = mTimeNow - mCreatedAt[i];
+            mWateredAt[i] = mTimeNow - (long) (random.nextDouble()
+                    * Math.min(sincePlanted, 2 * PlantRules.MAX_AGE_WITHOUT_WATER));
+            mTypes[i] = random.nextInt(4);
+        }
+
+        // Plants are created in ID order, so the creation times sorted are the garden order
+        mSortedCreatedAt = mCreatedAt.clone();
+        Arrays.sort(mSortedCreatedAt);
+        mSortedIds = new long[gardenSize];
+        for (int i = 0; i < gardenSize; i++) mSortedIds[i] = i + 1;
+
+        int changed = Math.min(CHANGED_PLANTS, gardenSize);
+        mChangedCreatedAt = new long[changed];
+        mChangedIds = new long[changed];
+        for (int i = 0; i < changed; i++) {
+            mChangedCreatedAt[i] = mTimeNow - (long) (random.nextDouble() * 3 * PlantRules.DAY_MILLISECONDS);
+            mChangedIds[i] = gardenSize + i + 1;
+        }
+        sortByCreation(mChangedCreatedAt, mChangedIds);
+    }
+
+    // Insertion sort into garden order, only used on the small changed batch during setup
+    private static void sortByCreation(long[] createdAt, long[] ids) {
+        for (int i = 1; i < createdAt.length; i++) {
+            for (int j = i; j > 0 && GardenSort.compareByCreation(createdAt[j], ids[j],
+                    createdAt[j - 1], ids[j - 1]) < 0; j--) {
+                long swap = createdAt[j];
+                createdAt[j] = createdAt[j - 1];
+                createdAt[j - 1] = swap;
+                swap = ids[j];
+                ids[j] = ids[j - 1];
+                ids[j - 1] = swap;
+            }
+        }
+    }
+
+    // The ordering step of PlantRecord.merge: the loaded garden and the changed plants, both in
+    // garden order, merged into one record in garden order
+    @Benchmark
+    public long[] mergeByCreation() {
+        int size = mSortedIds.length + mChangedIds.length;
+        long[] mergedIds = new long[size];
+        int b = 0;
+        int c = 0;
+        for (int i = 0; i < size; i++) {
+            boolean fromBase = b < mSortedIds.length && (c >= mChangedIds.length
+                    || GardenSort.compareByCreation(mSortedCreatedAt[b], mSortedIds[b],
+                    mChangedCreatedAt[c], mChangedIds[c]) < 0);
+            mergedIds[i] = fromBase ? mSortedIds[b++] : mChangedIds[c++];
+        }
+        return mergedIds;
+    }
+
+    @Benchmark
+    public void classify(Blackhole blackhole) {
+        for (int i = 0; i < gardenSize; i++) {
+            blackhole.consume(PlantRules.getPlantStatus(mTimeNow - mWateredAt[i]));
+            blackhole.consume(PlantRules.getPlantSize(mTimeNow - mCreatedAt[i]));
+            blackhole.consume(PlantRules.canWater(mTimeNow - mWateredAt[i]));
+        }
+    }
+
+    // The whole garden in one pass, to compare with classify and nextTransition together
+    @Benchmark
+    public GardenState classifyGardenSequential() {
+        return GardenStateEngine.classifySequential(mCreatedAt, mWateredAt, mTypes, mTimeNow);
+    }
+
+    @Benchmark
+    public GardenState classifyGardenParallel() {
+        return GardenStateEngine.classifyParallel(mCreatedAt, mWateredAt, mTypes, mTimeNow);
+    }
+
+    @Benchmark
+    public long nextTransition() {
+        long next = Long.MAX_VALUE;
+        for (int i = 0; i < gardenSize; i++) {
+            next = Math.min(next, PlantRules.getNextTransitionTime(mCreatedAt[i], mWateredAt[i], mTimeNow));
+        }
+        return next;
+    }
+
+    @Benchmark
+    public void formatAges(Blackhole blackhole) {
+        for (int i = 0; i < gardenSize; i++) {
+            long plantAge = mTimeNow - mCreatedAt[i];
+            long waterAge = mTimeNow - mWateredAt[i];
+            blackhole.consume(PlantRules.getDisplayAgeInt(plantAge));
+            blackhole.consume(PlantRules.getDisplayAgeUnit(plantAge));
+            blackhole.consume(PlantRules.getDisplayAgeInt(waterAge));
+            blackhole.consume(PlantRules.getDisplayAgeUnit(waterAge));
+            blackhole.consume(PlantRules.getWaterPercent(waterAge));
+        }
+    }
+}
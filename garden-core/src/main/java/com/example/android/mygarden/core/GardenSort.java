@@ -0,0 +1,57 @@
+package com.example.android.mygarden.core;
+
+/*
+* Copyright (C) 2017 The Android Open Source Project
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*  	http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+/**
+ * The orders plants are kept in. The garden is sorted by creation time with the plant ID to break
+ * ties, and the neediest plant is the living one watered the longest time ago.
+ */
+public final class GardenSort {
+
+    private GardenSort() {
+    }
+
+    /**
+     * Compares two plants in garden order
+     *
+     * @return Negative if the first plant comes first, positive if the second does, 0 if equal
+     */
+    public static int compareByCreation(long createdAt, long plantId, long otherCreatedAt, long otherPlantId) {
+        if (createdAt != otherCreatedAt) return createdAt < otherCreatedAt ? -1 : 1;
+        if (plantId != otherPlantId) return plantId < otherPlantId ? -1 : 1;
+        return 0;
+    }
+
+    /**
+     * Finds the living plant watered the longest time ago, one plant at a time. This is the plain
+     * definition the tests hold PlantRepository's heap and GardenStateEngine to.
+     *
+     * @param wateredAt The last watering time of each plant
+     * @param timeNow   The current time in milliseconds
+     * @return Its position in the array, or -1 if every plant is dead or there are none
+     */
+    public static int findNeediest(long[] wateredAt, long timeNow) {
+        long diedBefore = timeNow - PlantRules.MAX_AGE_WITHOUT_WATER;
+        int neediest = -1;
+        for (int i = 0; i < wateredAt.length; i++) {
+            if (wateredAt[i] > diedBefore && (neediest < 0 || wateredAt[i] < wateredAt[neediest])) {
+                neediest = i;
+            }
+        }
+        return neediest;
+    }
+}
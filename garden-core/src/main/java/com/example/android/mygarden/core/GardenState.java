@@ -0,0 +1,125 @@
+package com.example.android.mygarden.core;
+
+/*
+* Copyright (C) 2017 The Android Open Source Project
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*  	http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+/**
+ * The state of every plant of a garden at one point in time, as worked out by GardenStateEngine.
+ * Each plant gets a packed state code, and the garden as a whole gets its counts per status and
+ * size, the plant that dies next and the time the next plant changes.
+ */
+public final class GardenState {
+
+    private final int[] mCodes;
+    private final int[] mStatusCounts = new int[PlantStatus.values().length];
+    // Index 0 counts the empty pots, the sizes follow in order
+    private final int[] mSizeCounts = new int[PlantSize.values().length + 1];
+    private int mWaterableCount;
+    private long mNextTransitionTime = Long.MAX_VALUE;
+    private int mNextToDie = -1;
+    private long mNextToDieWateredAt = Long.MAX_VALUE;
+
+    GardenState(int[] codes) {
+        mCodes = codes;
+    }
+
+    // Counts in one plant, called in position order within a range. A savable plant is one that
+    // watering can still save.
+    void add(int position, int code, long wateredAt, boolean savable, long nextTransitionTime) {
+        mCodes[position] = code;
+        mStatusCounts[code & GardenStateEngine.STATUS_MASK]++;
+        mSizeCounts[(code >>> GardenStateEngine.SIZE_SHIFT) & GardenStateEngine.SIZE_MASK]++;
+        if ((code & GardenStateEngine.WATERABLE_BIT) != 0) mWaterableCount++;
+        if (nextTransitionTime < mNextTransitionTime) mNextTransitionTime = nextTransitionTime;
+        // Strictly older, so ties go to the first plant
+        if (savable && wateredAt < mNextToDieWateredAt) {
+            mNextToDie = position;
+            mNextToDieWateredAt = wateredAt;
+        }
+    }
+
+    // Adds in the counts of the range right after this one
+    void merge(GardenState next) {
+        for (int i = 0; i < mStatusCounts.length; i++) mStatusCounts[i] += next.mStatusCounts[i];
+        for (int i = 0; i < mSizeCounts.length; i++) mSizeCounts[i] += next.mSizeCounts[i];
+        mWaterableCount += next.mWaterableCount;
+        mNextTransitionTime = Math.min(mNextTransitionTime, next.mNextTransitionTime);
+        if (next.mNextToDie >= 0 && next.mNextToDieWateredAt < mNextToDieWateredAt) {
+            mNextToDie = next.mNextToDie;
+            mNextToDieWateredAt = next.mNextToDieWateredAt;
+        }
+    }
+
+    /**
+     * @return The number of plants
+     */
+    public int size() {
+        return mCodes.length;
+    }
+
+    /**
+     * @return The packed state code of a plant, read with the GardenStateEngine getters
+     */
+    public int getCode(int position) {
+        return mCodes[position];
+    }
+
+    public int getStatusCount(PlantStatus status) {
+        return mStatusCounts[status.ordinal()];
+    }
+
+    public int getSizeCount(PlantSize size) {
+        return mSizeCounts[size.ordinal() + 1];
+    }
+
+    /**
+     * @return The number of plants that have not sprouted yet
+     */
+    public int getEmptyPotCount() {
+        return mSizeCounts[0];
+    }
+
+    /**
+     * @return The number of plants that can be watered now
+     */
+    public int getWaterableCount() {
+        return mWaterableCount;
+    }
+
+    /**
+     * @return The next time any plant changes image or watering button, or Long.MAX_VALUE if
+     * none will
+     */
+    public long getNextTransitionTime() {
+        return mNextTransitionTime;
+    }
+
+    /**
+     * @return The position of the plant watered the longest time ago that can still be watered,
+     * the first of them if several were watered at once, or -1 if there is none. This is the plant
+     * GardenSort.findNeediest picks.
+     */
+    public int getNextToDie() {
+        return mNextToDie;
+    }
+
+    /**
+     * @return When the plant at getNextToDie() dies, or Long.MAX_VALUE if there is none
+     */
+    public long getNextDeathTime() {
+        return mNextToDie < 0 ? Long.MAX_VALUE : mNextToDieWateredAt + PlantRules.MAX_AGE_WITHOUT_WATER + 1;
+    }
+}
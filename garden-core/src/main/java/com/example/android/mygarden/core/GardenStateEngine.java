@@ -0,0 +1,146 @@
+package com.example.android.mygarden.core;
+
+/*
+* Copyright (C) 2017 The Android Open Source Project
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*  	http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+/**
+ * Works out the state of a whole garden at once, over plain arrays of plant columns, in a single
+ * pass with no enum lookups or allocation per plant. Large gardens are split across cores with
+ * fork/join.
+ * <p>
+ * Each plant's state is packed into an int: the PlantStatus ordinal in bits 0-1, the PlantSize
+ * ordinal plus one in bits 2-3 (0 for an empty pot), whether it can be watered in bit 4 and the
+ * plant type from bit 8 up.
+ */
+public final class GardenStateEngine {
+
+    // Below this many plants the cost of forking outweighs the work saved
+    public static final int PARALLEL_THRESHOLD = 1 << 16;
+
+    static final int STATUS_MASK = 0x3;
+    static final int SIZE_SHIFT = 2;
+    static final int SIZE_MASK = 0x3;
+    static final int WATERABLE_BIT = 1 << 4;
+    static final int TYPE_SHIFT = 8;
+
+    private static final PlantStatus[] STATUSES = PlantStatus.values();
+    private static final PlantSize[] SIZES = PlantSize.values();
+
+    // ForkJoinPool only exists on Android from API 21, older devices always classify sequentially
+    private static final boolean PARALLEL_SUPPORTED = isParallelSupported();
+
+    private GardenStateEngine() {
+    }
+
+    private static boolean isParallelSupported() {
+        try {
+            Class.forName("java.util.concurrent.ForkJoinPool");
+            return Runtime.getRuntime().availableProcessors() > 1;
+        } catch (ClassNotFoundException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Classifies every plant, in parallel if the garden is large enough and the platform
+     * supports it. The arrays are read only and must all have the same length.
+     *
+     * @param createdAt The creation time of each plant
+     * @param wateredAt The last watering time of each plant
+     * @param types     The type of each plant
+     * @param timeNow   The current time in milliseconds
+     * @return The state of the garden
+     */
+    public static GardenState classify(long[] createdAt, long[] wateredAt, int[] types, long timeNow) {
+        if (PARALLEL_SUPPORTED && createdAt.length >= PARALLEL_THRESHOLD) {
+            return classifyParallel(createdAt, wateredAt, types, timeNow);
+        }
+        return classifySequential(createdAt, wateredAt, types, timeNow);
+    }
+
+    /**
+     * Classifies every plant on the calling thread
+     *
+     * @see #classify(long[], long[], int[], long)
+     */
+    public static GardenState classifySequential(long[] createdAt, long[] wateredAt, int[] types, long timeNow) {
+        int count = checkLengths(createdAt, wateredAt, types);
+        GardenState state = new GardenState(new int[count]);
+        classifyRange(createdAt, wateredAt, types, timeNow, 0, count, state);
+        return state;
+    }
+
+    /**
+     * Classifies every plant with fork/join, whatever the size of the garden. Needs API 21 on
+     * Android.
+     *
+     * @see #classify(long[], long[], int[], long)
+     */
+    public static GardenState classifyParallel(long[] createdAt, long[] wateredAt, int[] types, long timeNow) {
+        int count = checkLengths(createdAt, wateredAt, types);
+        return GardenStateTask.classify(createdAt, wateredAt, types, timeNow, new int[count]);
+    }
+
+    private static int checkLengths(long[] createdAt, long[] wateredAt, int[] types) {
+        if (wateredAt.length != createdAt.length || types.length != createdAt.length) {
+            throw new IllegalArgumentException("Plant columns differ in length: " + createdAt.length
+                    + " created, " + wateredAt.length + " watered, " + types.length + " types");
+        }
+        return createdAt.length;
+    }
+
+    // The loop every path runs, over the positions from (inclusive) to (exclusive)
+    static void classifyRange(long[] createdAt, long[] wateredAt, int[] types, long timeNow,
+                              int from, int to, GardenState state) {
+        for (int i = from; i < to; i++) {
+            long plantAge = timeNow - createdAt[i];
+            long waterAge = timeNow - wateredAt[i];
+
+            // The same thresholds as PlantRules.getPlantStatus, getPlantSize and canWater
+            int status = waterAge > PlantRules.MAX_AGE_WITHOUT_WATER ? 2
+                    : waterAge > PlantRules.DANGER_AGE_WITHOUT_WATER ? 1 : 0;
+            int size = plantAge > PlantRules.FULLY_GROWN_AGE ? 3
+                    : plantAge > PlantRules.JUVENILE_AGE ? 2
+                    : plantAge > PlantRules.TINY_AGE ? 1 : 0;
+            int waterable = waterAge > PlantRules.MIN_AGE_BETWEEN_WATER
+                    && waterAge < PlantRules.MAX_AGE_WITHOUT_WATER ? WATERABLE_BIT : 0;
+            int code = (types[i] << TYPE_SHIFT) | waterable | (size << SIZE_SHIFT) | status;
+
+            state.add(i, code, wateredAt[i], waterAge < PlantRules.MAX_AGE_WITHOUT_WATER,
+                    PlantRules.getNextTransitionTime(createdAt[i], wateredAt[i], timeNow));
+        }
+    }
+
+    public static PlantStatus getStatus(int code) {
+        return STATUSES[code & STATUS_MASK];
+    }
+
+    /**
+     * @return The size of the plant, or null if the pot is still empty
+     */
+    public static PlantSize getSize(int code) {
+        int size = (code >>> SIZE_SHIFT) & SIZE_MASK;
+        return size == 0 ? null : SIZES[size - 1];
+    }
+
+    public static boolean canWater(int code) {
+        return (code & WATERABLE_BIT) != 0;
+    }
+
+    public static int getType(int code) {
+        return code >>> TYPE_SHIFT;
+    }
+}
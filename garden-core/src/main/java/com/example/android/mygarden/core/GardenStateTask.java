@@ -0,0 +1,78 @@
+package com.example.android.mygarden.core;
+
+/*
+* Copyright (C) 2017 The Android Open Source Project
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*  	http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * The fork/join side of GardenStateEngine, kept in its own class so that it is only loaded where
+ * ForkJoinPool exists. Ranges are halved until they are small enough to classify in one go,
+ * then the halves' counts are merged back in position order.
+ */
+final class GardenStateTask extends RecursiveTask<GardenState> {
+
+    private static final long serialVersionUID = 1L;
+
+    // Large enough that a leaf outlasts the cost of forking it
+    private static final int LEAF_SIZE = 1 << 13;
+
+    // Java 7 has no common pool, so the garden keeps one of its own
+    private static final ForkJoinPool sPool = new ForkJoinPool();
+
+    private final long[] mCreatedAt;
+    private final long[] mWateredAt;
+    private final int[] mTypes;
+    private final long mTimeNow;
+    private final int[] mCodes;
+    private final int mFrom;
+    private final int mTo;
+
+    private GardenStateTask(long[] createdAt, long[] wateredAt, int[] types, long timeNow,
+                            int[] codes, int from, int to) {
+        mCreatedAt = createdAt;
+        mWateredAt = wateredAt;
+        mTypes = types;
+        mTimeNow = timeNow;
+        mCodes = codes;
+        mFrom = from;
+        mTo = to;
+    }
+
+    static GardenState classify(long[] createdAt, long[] wateredAt, int[] types, long timeNow, int[] codes) {
+        return sPool.invoke(new GardenStateTask(createdAt, wateredAt, types, timeNow, codes, 0, codes.length));
+    }
+
+    @Override
+    protected GardenState compute() {
+        if (mTo - mFrom <= LEAF_SIZE) {
+            GardenState state = new GardenState(mCodes);
+            GardenStateEngine.classifyRange(mCreatedAt, mWateredAt, mTypes, mTimeNow, mFrom, mTo, state);
+            return state;
+        }
+
+        int middle = (mFrom + mTo) >>> 1;
+        GardenStateTask left = new GardenStateTask(mCreatedAt, mWateredAt, mTypes, mTimeNow, mCodes, mFrom, middle);
+        GardenStateTask right = new GardenStateTask(mCreatedAt, mWateredAt, mTypes, mTimeNow, mCodes, middle, mTo);
+        left.fork();
+        GardenState state = right.compute();
+        // The left half comes first, so its plant wins ties for the next to die
+        GardenState leftState = left.join();
+        leftState.merge(state);
+        return leftState;
+    }
+}
@@ -0,0 +1,139 @@
+package com.example.android.mygarden.core;
+
+/*
+* Copyright (C) 2017 The Android Open Source Project
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*  	http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts latencies into power-of-two buckets of nanoseconds. Recording is a handful of atomic
+ * increments with no allocation or locking, so it can stay on in release builds. Percentiles are
+ * read back as the upper bound of their bucket, so they are accurate to within a factor of two.
+ */
+public final class LatencyHistogram {
+
+    // Bucket 0 counts 0ns, bucket i counts latencies from 2^(i-1) up to 2^i - 1 nanoseconds
+    private static final int BUCKET_COUNT = 64;
+
+    private final String mName;
+    private final AtomicLongArray mBuckets = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong mCount = new AtomicLong();
+    private final AtomicLong mTotalNanos = new AtomicLong();
+    private final AtomicLong mMaxNanos = new AtomicLong();
+
+    public LatencyHistogram(String name) {
+        mName = name;
+    }
+
+    public String getName() {
+        return mName;
+    }
+
+    /**
+     * Records one latency
+     *
+     * @param nanos The latency in nanoseconds, negative values count as 0
+     */
+    public void record(long nanos) {
+        if (nanos < 0) nanos = 0;
+        mBuckets.incrementAndGet(BUCKET_COUNT - Long.numberOfLeadingZeros(nanos));
+        mCount.incrementAndGet();
+        mTotalNanos.addAndGet(nanos);
+        long max = mMaxNanos.get();
+        while (nanos > max && !mMaxNanos.compareAndSet(max, nanos)) {
+            max = mMaxNanos.get();
+        }
+    }
+
+    /**
+     * @return A copy of the counts so far. Latencies recorded while it is taken may be only
+     * partly included.
+     */
+    public Snapshot snapshot() {
+        long[] buckets = new long[BUCKET_COUNT];
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            buckets[i] = mBuckets.get(i);
+        }
+        return new Snapshot(mName, buckets, mCount.get(), mTotalNanos.get(), mMaxNanos.get());
+    }
+
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            mBuckets.set(i, 0);
+        }
+        mCount.set(0);
+        mTotalNanos.set(0);
+        mMaxNanos.set(0);
+    }
+
+    /**
+     * The counts of a histogram at one point in time
+     */
+    public static final class Snapshot {
+
+        private final String mName;
+        private final long[] mBuckets;
+        private final long mCount;
+        private final long mTotalNanos;
+        private final long mMaxNanos;
+
+        Snapshot(String name, long[] buckets, long count, long totalNanos, long maxNanos) {
+            mName = name;
+            mBuckets = buckets;
+            mCount = count;
+            mTotalNanos = totalNanos;
+            mMaxNanos = maxNanos;
+        }
+
+        public String getName() {
+            return mName;
+        }
+
+        public long getCount() {
+            return mCount;
+        }
+
+        public long getMaxNanos() {
+            return mMaxNanos;
+        }
+
+        public long getMeanNanos() {
+            return mCount == 0 ? 0 : mTotalNanos / mCount;
+        }
+
+        /**
+         * @param percentile The percentile, from 0 to 100
+         * @return The latency that percentile of the recordings were at or under, 0 if none
+         */
+        public long getPercentileNanos(double percentile) {
+            long total = 0;
+            for (long bucket : mBuckets) total += bucket;
+            if (total == 0) return 0;
+
+            long rank = (long) Math.ceil(total * Math.min(100, Math.max(0, percentile)) / 100);
+            long seen = 0;
+            for (int i = 0; i < mBuckets.length; i++) {
+                seen += mBuckets[i];
+                if (seen >= rank && seen > 0) {
+                    long upperBound = i == 0 ? 0 : (i == BUCKET_COUNT - 1 ? Long.MAX_VALUE : (1L << i) - 1);
+                    return Math.min(upperBound, mMaxNanos);
+                }
+            }
+            return mMaxNanos;
+        }
+    }
+}
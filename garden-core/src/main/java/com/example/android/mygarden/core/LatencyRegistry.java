@@ -0,0 +1,78 @@
+package com.example.android.mygarden.core;
+
+/*
+* Copyright (C) 2017 The Android Open Source Project
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*  	http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A named set of latency histograms, dumped in the order they were first asked for
+ */
+public final class LatencyRegistry {
+
+    private final Map<String, LatencyHistogram> mHistograms = new LinkedHashMap<String, LatencyHistogram>();
+
+    /**
+     * Returns the histogram with the given name, creating it on first use
+     */
+    public synchronized LatencyHistogram get(String name) {
+        LatencyHistogram histogram = mHistograms.get(name);
+        if (histogram == null) {
+            histogram = new LatencyHistogram(name);
+            mHistograms.put(name, histogram);
+        }
+        return histogram;
+    }
+
+    /**
+     * @return A snapshot of every histogram
+     */
+    public synchronized List<LatencyHistogram.Snapshot> snapshot() {
+        List<LatencyHistogram.Snapshot> snapshots =
+                new ArrayList<LatencyHistogram.Snapshot>(mHistograms.size());
+        for (LatencyHistogram histogram : mHistograms.values()) {
+            snapshots.add(histogram.snapshot());
+        }
+        return snapshots;
+    }
+
+    public synchronized void reset() {
+        for (LatencyHistogram histogram : mHistograms.values()) {
+            histogram.reset();
+        }
+    }
+
+    /**
+     * Writes one line per histogram with its count and latencies in microseconds
+     */
+    public void dump(PrintWriter writer) {
+        writer.println("Latencies (us): count mean p50 p90 p99 max");
+        for (LatencyHistogram.Snapshot snapshot : snapshot()) {
+            writer.printf("  %-40s %8d %8d %8d %8d %8d %8d%n",
+                    snapshot.getName(),
+                    snapshot.getCount(),
+                    snapshot.getMeanNanos() / 1000,
+                    snapshot.getPercentileNanos(50) / 1000,
+                    snapshot.getPercentileNanos(90) / 1000,
+                    snapshot.getPercentileNanos(99) / 1000,
+                    snapshot.getMaxNanos() / 1000);
+        }
+    }
+}
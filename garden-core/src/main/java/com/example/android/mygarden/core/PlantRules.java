@@ -0,0 +1,128 @@
+package com.example.android.mygarden.core;
+
+/*
+* Copyright (C) 2017 The Android Open Source Project
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*  	http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+/**
+ * The rules of the garden: how plants grow, wilt and die as time passes, and how their ages
+ * are displayed. Plain Java with no Android dependencies, so it can be run and benchmarked
+ * off the device.
+ */
+public final class PlantRules {
+
+    public static final long MINUTE_MILLISECONDS = 1000 * 60;
+    public static final long HOUR_MILLISECONDS = MINUTE_MILLISECONDS * 60;
+    public static final long DAY_MILLISECONDS = HOUR_MILLISECONDS * 24;
+
+    public static final long MIN_AGE_BETWEEN_WATER = HOUR_MILLISECONDS * 2; // can water every 2 hours
+    public static final long DANGER_AGE_WITHOUT_WATER = HOUR_MILLISECONDS * 6; // in danger after 6 hours
+    public static final long MAX_AGE_WITHOUT_WATER = HOUR_MILLISECONDS * 12; // plants die after 12 hours
+    public static final long TINY_AGE = DAY_MILLISECONDS * 0; // plants start tiny
+    public static final long JUVENILE_AGE = DAY_MILLISECONDS * 1; // 1 day old
+    public static final long FULLY_GROWN_AGE = DAY_MILLISECONDS * 2; // 2 days old
+
+    private PlantRules() {
+    }
+
+    /**
+     * @param waterAge Time (in milliseconds) since the plant was last watered
+     * @return The status of the plant
+     */
+    public static PlantStatus getPlantStatus(long waterAge) {
+        if (waterAge > MAX_AGE_WITHOUT_WATER) return PlantStatus.DEAD;
+        if (waterAge > DANGER_AGE_WITHOUT_WATER) return PlantStatus.DYING;
+        return PlantStatus.ALIVE;
+    }
+
+    /**
+     * @param plantAge Time (in milliseconds) the plant has been alive
+     * @return The size of the plant, or null if it has not sprouted yet and the pot is empty
+     */
+    public static PlantSize getPlantSize(long plantAge) {
+        if (plantAge > FULLY_GROWN_AGE) return PlantSize.FULLY_GROWN;
+        if (plantAge > JUVENILE_AGE) return PlantSize.JUVENILE;
+        if (plantAge > TINY_AGE) return PlantSize.TINY;
+        return null;
+    }
+
+    /**
+     * @param waterAge Time (in milliseconds) since the plant was last watered
+     * @return true if the plant is alive and was not watered too recently
+     */
+    public static boolean canWater(long waterAge) {
+        return waterAge > MIN_AGE_BETWEEN_WATER && waterAge < MAX_AGE_WITHOUT_WATER;
+    }
+
+    /**
+     * @param waterAge Time (in milliseconds) since the plant was last watered
+     * @return How much water is left, 100 just after watering and 0 or less once dead
+     */
+    public static int getWaterPercent(long waterAge) {
+        return 100 - ((int) (100 * waterAge / MAX_AGE_WITHOUT_WATER));
+    }
+
+    /**
+     * Returns the next time the plant's image or watering button will change, that is
+     * the first moment after timeNow at which its age or time since watering crosses one of the
+     * thresholds above
+     *
+     * @param createdAt Time (in milliseconds) the plant was created
+     * @param wateredAt Time (in milliseconds) the plant was last watered
+     * @param timeNow   The current time in milliseconds
+     * @return The time of the next change, or Long.MAX_VALUE if the plant will not change again
+     */
+    public static long getNextTransitionTime(long createdAt, long wateredAt, long timeNow) {
+        // Each state is entered once the age is strictly greater than its threshold
+        long next = Long.MAX_VALUE;
+        next = earliestAfter(next, createdAt + TINY_AGE + 1, timeNow);
+        next = earliestAfter(next, createdAt + JUVENILE_AGE + 1, timeNow);
+        next = earliestAfter(next, createdAt + FULLY_GROWN_AGE + 1, timeNow);
+        next = earliestAfter(next, wateredAt + MIN_AGE_BETWEEN_WATER + 1, timeNow);
+        next = earliestAfter(next, wateredAt + DANGER_AGE_WITHOUT_WATER + 1, timeNow);
+        next = earliestAfter(next, wateredAt + MAX_AGE_WITHOUT_WATER + 1, timeNow);
+        return next;
+    }
+
+    private static long earliestAfter(long earliest, long time, long timeNow) {
+        return (time > timeNow && time < earliest) ? time : earliest;
+    }
+
+    /**
+     * Converts the age in milli seconds to a displayable format (days, hours or minutes)
+     *
+     * @param milliSeconds The age in milli seconds
+     * @return The value of either days, hours or minutes
+     */
+    public static int getDisplayAgeInt(long milliSeconds) {
+        int days = (int) (milliSeconds / DAY_MILLISECONDS);
+        if (days >= 1) return days;
+        int hours = (int) (milliSeconds / HOUR_MILLISECONDS);
+        if (hours >= 1) return hours;
+        return (int) (milliSeconds / MINUTE_MILLISECONDS);
+    }
+
+    /**
+     * Converts the age in milli seconds to a displayable format (days, hours or minutes)
+     *
+     * @param milliSeconds The age in milli seconds
+     * @return The unit of either days, hours or minutes
+     */
+    public static AgeUnit getDisplayAgeUnit(long milliSeconds) {
+        if (milliSeconds / DAY_MILLISECONDS >= 1) return AgeUnit.DAYS;
+        if (milliSeconds / HOUR_MILLISECONDS >= 1) return AgeUnit.HOURS;
+        return AgeUnit.MINUTES;
+    }
+}
@@ -0,0 +1,95 @@
+package com.example.android.mygarden.core;
+
+/*
+* Copyright (C) 2017 The Android Open Source Project
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*  	http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import static com.example.android.mygarden.core.PlantRules.MAX_AGE_WITHOUT_WATER;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class GardenSortTest {
+
+    private static final long TIME_NOW = 1500000000000L;
+
+    @Test
+    public void compareByCreation_ordersByCreationThenId() {
+        assertTrue(GardenSort.compareByCreation(1, 9, 2, 1) < 0);
+        assertTrue(GardenSort.compareByCreation(2, 1, 1, 9) > 0);
+        assertTrue(GardenSort.compareByCreation(5, 1, 5, 2) < 0);
+        assertTrue(GardenSort.compareByCreation(5, 2, 5, 1) > 0);
+        assertEquals(0, GardenSort.compareByCreation(5, 2, 5, 2));
+    }
+
+    @Test
+    public void compareByCreation_sortsAGardenIntoGardenOrder() {
+        // {createdAt, id}, shuffled from the expected order
+        long[][] expected = {{1, 4}, {1, 7}, {2, 1}, {3, 2}, {3, 3}, {Long.MAX_VALUE, 5}};
+        List<long[]> plants = new ArrayList<long[]>();
+        plants.add(expected[4]);
+        plants.add(expected[1]);
+        plants.add(expected[5]);
+        plants.add(expected[0]);
+        plants.add(expected[3]);
+        plants.add(expected[2]);
+
+        Collections.sort(plants, new Comparator<long[]>() {
+            @Override
+            public int compare(long[] plant, long[] other) {
+                return GardenSort.compareByCreation(plant[0], plant[1], other[0], other[1]);
+            }
+        });
+
+        for (int i = 0; i < expected.length; i++) {
+            assertTrue(expected[i] == plants.get(i));
+        }
+    }
+
+    @Test
+    public void findNeediest_isTheLivingPlantWateredLongestAgo() {
+        long[] wateredAt = {TIME_NOW - 10, TIME_NOW - 30, TIME_NOW - 20};
+        assertEquals(1, GardenSort.findNeediest(wateredAt, TIME_NOW));
+    }
+
+    @Test
+    public void findNeediest_takesTheFirstOfPlantsWateredTogether() {
+        long[] wateredAt = {TIME_NOW - 10, TIME_NOW - 30, TIME_NOW - 30};
+        assertEquals(1, GardenSort.findNeediest(wateredAt, TIME_NOW));
+    }
+
+    @Test
+    public void findNeediest_skipsPlantsThatCanNoLongerBeWatered() {
+        long[] wateredAt = {
+                TIME_NOW - MAX_AGE_WITHOUT_WATER - 1,
+                TIME_NOW - MAX_AGE_WITHOUT_WATER,
+                TIME_NOW - MAX_AGE_WITHOUT_WATER + 1,
+                TIME_NOW};
+        assertEquals(2, GardenSort.findNeediest(wateredAt, TIME_NOW));
+    }
+
+    @Test
+    public void findNeediest_isNoneForAnEmptyOrDeadGarden() {
+        assertEquals(-1, GardenSort.findNeediest(new long[0], TIME_NOW));
+        assertEquals(-1, GardenSort.findNeediest(
+                new long[]{TIME_NOW - MAX_AGE_WITHOUT_WATER - 1, 0}, TIME_NOW));
+    }
+}
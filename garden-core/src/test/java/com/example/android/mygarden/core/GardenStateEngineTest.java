@@ -0,0 +1,173 @@
+package com.example.android.mygarden.core;
+
+/*
+* Copyright (C) 2017 The Android Open Source Project
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*  	http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static com.example.android.mygarden.core.PlantRules.DANGER_AGE_WITHOUT_WATER;
+import static com.example.android.mygarden.core.PlantRules.DAY_MILLISECONDS;
+import static com.example.android.mygarden.core.PlantRules.FULLY_GROWN_AGE;
+import static com.example.android.mygarden.core.PlantRules.JUVENILE_AGE;
+import static com.example.android.mygarden.core.PlantRules.MAX_AGE_WITHOUT_WATER;
+import static com.example.android.mygarden.core.PlantRules.MIN_AGE_BETWEEN_WATER;
+import static org.junit.Assert.assertEquals;
+
+public class GardenStateEngineTest {
+
+    private static final long TIME_NOW = 1500000000000L;
+
+    // Ages right on and either side of every threshold, mixed in with the random ones
+    private static final long[] PLANT_AGES = {0, 1, JUVENILE_AGE, JUVENILE_AGE + 1,
+            FULLY_GROWN_AGE, FULLY_GROWN_AGE + 1};
+    private static final long[] WATER_AGES = {0, MIN_AGE_BETWEEN_WATER, MIN_AGE_BETWEEN_WATER + 1,
+            DANGER_AGE_WITHOUT_WATER, DANGER_AGE_WITHOUT_WATER + 1,
+            MAX_AGE_WITHOUT_WATER - 1, MAX_AGE_WITHOUT_WATER, MAX_AGE_WITHOUT_WATER + 1};
+
+    private long[] mCreatedAt;
+    private long[] mWateredAt;
+    private int[] mTypes;
+
+    private void plantGarden(int size) {
+        Random random = new Random(size);
+        mCreatedAt = new long[size];
+        mWateredAt = new long[size];
+        mTypes = new int[size];
+        for (int i = 0; i < size; i++) {
+            if (i % 3 == 0) {
+                mCreatedAt[i] = TIME_NOW - PLANT_AGES[random.nextInt(PLANT_AGES.length)];
+                mWateredAt[i] = TIME_NOW - WATER_AGES[random.nextInt(WATER_AGES.length)];
+            } else {
+                mCreatedAt[i] = TIME_NOW - (long) (random.nextDouble() * 3 * DAY_MILLISECONDS);
+                mWateredAt[i] = TIME_NOW - (long) (random.nextDouble() * 2 * MAX_AGE_WITHOUT_WATER);
+            }
+            mTypes[i] = random.nextInt(4);
+        }
+    }
+
+    @Test
+    public void codes_matchPlantRules() {
+        plantGarden(5000);
+        GardenState state = GardenStateEngine.classifySequential(mCreatedAt, mWateredAt, mTypes, TIME_NOW);
+        for (int i = 0; i < state.size(); i++) {
+            int code = state.getCode(i);
+            long plantAge = TIME_NOW - mCreatedAt[i];
+            long waterAge = TIME_NOW - mWateredAt[i];
+            assertEquals(PlantRules.getPlantStatus(waterAge), GardenStateEngine.getStatus(code));
+            assertEquals(PlantRules.getPlantSize(plantAge), GardenStateEngine.getSize(code));
+            assertEquals(PlantRules.canWater(waterAge), GardenStateEngine.canWater(code));
+            assertEquals(mTypes[i], GardenStateEngine.getType(code));
+        }
+    }
+
+    @Test
+    public void summary_matchesPlantRulesAndFindNeediest() {
+        plantGarden(5000);
+        GardenState state = GardenStateEngine.classifySequential(mCreatedAt, mWateredAt, mTypes, TIME_NOW);
+        assertSummaryMatchesRules(state);
+    }
+
+    @Test
+    public void sequentialAndParallel_agreeAroundTheThreshold() {
+        int threshold = GardenStateEngine.PARALLEL_THRESHOLD;
+        for (int size : new int[]{0, 1, 7, threshold - 1, threshold, threshold + 1, 3 * threshold + 5}) {
+            plantGarden(size);
+            GardenState sequential =
+                    GardenStateEngine.classifySequential(mCreatedAt, mWateredAt, mTypes, TIME_NOW);
+            GardenState parallel =
+                    GardenStateEngine.classifyParallel(mCreatedAt, mWateredAt, mTypes, TIME_NOW);
+            GardenState chosen = GardenStateEngine.classify(mCreatedAt, mWateredAt, mTypes, TIME_NOW);
+
+            assertSameState(sequential, parallel);
+            assertSameState(sequential, chosen);
+            assertSummaryMatchesRules(parallel);
+        }
+    }
+
+    @Test
+    public void nextToDie_takesTheFirstOfPlantsWateredTogether() {
+        int size = GardenStateEngine.PARALLEL_THRESHOLD + 1;
+        plantGarden(size);
+        for (int i = 0; i < size; i++) mWateredAt[i] = TIME_NOW;
+        // Equally thirsty plants on both sides of the first fork
+        mWateredAt[size / 2 + 1] = TIME_NOW - DANGER_AGE_WITHOUT_WATER;
+        mWateredAt[size - 1] = TIME_NOW - DANGER_AGE_WITHOUT_WATER;
+
+        assertEquals(size / 2 + 1, GardenStateEngine.classifyParallel(
+                mCreatedAt, mWateredAt, mTypes, TIME_NOW).getNextToDie());
+        assertEquals(size / 2 + 1, GardenStateEngine.classifySequential(
+                mCreatedAt, mWateredAt, mTypes, TIME_NOW).getNextToDie());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void classify_rejectsColumnsOfDifferentLengths() {
+        GardenStateEngine.classify(new long[2], new long[2], new int[1], TIME_NOW);
+    }
+
+    private void assertSummaryMatchesRules(GardenState state) {
+        int[] statusCounts = new int[PlantStatus.values().length];
+        int[] sizeCounts = new int[PlantSize.values().length];
+        int emptyPots = 0;
+        int waterable = 0;
+        long nextTransition = Long.MAX_VALUE;
+        for (int i = 0; i < mCreatedAt.length; i++) {
+            long plantAge = TIME_NOW - mCreatedAt[i];
+            long waterAge = TIME_NOW - mWateredAt[i];
+            statusCounts[PlantRules.getPlantStatus(waterAge).ordinal()]++;
+            PlantSize size = PlantRules.getPlantSize(plantAge);
+            if (size == null) emptyPots++;
+            else sizeCounts[size.ordinal()]++;
+            if (PlantRules.canWater(waterAge)) waterable++;
+            nextTransition = Math.min(nextTransition,
+                    PlantRules.getNextTransitionTime(mCreatedAt[i], mWateredAt[i], TIME_NOW));
+        }
+
+        for (PlantStatus status : PlantStatus.values()) {
+            assertEquals(statusCounts[status.ordinal()], state.getStatusCount(status));
+        }
+        for (PlantSize size : PlantSize.values()) {
+            assertEquals(sizeCounts[size.ordinal()], state.getSizeCount(size));
+        }
+        assertEquals(emptyPots, state.getEmptyPotCount());
+        assertEquals(waterable, state.getWaterableCount());
+        assertEquals(nextTransition, state.getNextTransitionTime());
+
+        int neediest = GardenSort.findNeediest(mWateredAt, TIME_NOW);
+        assertEquals(neediest, state.getNextToDie());
+        assertEquals(neediest < 0 ? Long.MAX_VALUE : mWateredAt[neediest] + MAX_AGE_WITHOUT_WATER + 1,
+                state.getNextDeathTime());
+    }
+
+    private static void assertSameState(GardenState expected, GardenState actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals("code at " + i, expected.getCode(i), actual.getCode(i));
+        }
+        for (PlantStatus status : PlantStatus.values()) {
+            assertEquals(expected.getStatusCount(status), actual.getStatusCount(status));
+        }
+        for (PlantSize size : PlantSize.values()) {
+            assertEquals(expected.getSizeCount(size), actual.getSizeCount(size));
+        }
+        assertEquals(expected.getEmptyPotCount(), actual.getEmptyPotCount());
+        assertEquals(expected.getWaterableCount(), actual.getWaterableCount());
+        assertEquals(expected.getNextTransitionTime(), actual.getNextTransitionTime());
+        assertEquals(expected.getNextToDie(), actual.getNextToDie());
+        assertEquals(expected.getNextDeathTime(), actual.getNextDeathTime());
+    }
+}
@@ -0,0 +1,164 @@
+package com.example.android.mygarden.core;
+
+/*
+* Copyright (C) 2017 The Android Open Source Project
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*  	http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void snapshot_ofAnEmptyHistogramIsAllZero() {
+        LatencyHistogram.Snapshot snapshot = new LatencyHistogram("empty").snapshot();
+        assertEquals("empty", snapshot.getName());
+        assertEquals(0, snapshot.getCount());
+        assertEquals(0, snapshot.getMeanNanos());
+        assertEquals(0, snapshot.getMaxNanos());
+        assertEquals(0, snapshot.getPercentileNanos(50));
+        assertEquals(0, snapshot.getPercentileNanos(100));
+    }
+
+    @Test
+    public void record_countsZeroAndNegativeLatenciesAsZero() {
+        LatencyHistogram histogram = new LatencyHistogram("zero");
+        histogram.record(0);
+        histogram.record(-5);
+
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(2, snapshot.getCount());
+        assertEquals(0, snapshot.getMeanNanos());
+        assertEquals(0, snapshot.getMaxNanos());
+        assertEquals(0, snapshot.getPercentileNanos(100));
+    }
+
+    @Test
+    public void percentile_isTheUpperBoundOfItsPowerOfTwoBucket() {
+        LatencyHistogram histogram = new LatencyHistogram("buckets");
+        histogram.record(1);    // bucket 1, [1, 1]
+        histogram.record(100);  // bucket 7, [64, 127]
+        histogram.record(128);  // bucket 8, [128, 255]
+        histogram.record(1000); // bucket 10, [512, 1023]
+
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(1, snapshot.getPercentileNanos(25));
+        assertEquals(127, snapshot.getPercentileNanos(50));
+        assertEquals(255, snapshot.getPercentileNanos(75));
+        // The last bucket's upper bound is capped at the largest latency recorded
+        assertEquals(1000, snapshot.getPercentileNanos(100));
+    }
+
+    @Test
+    public void percentile_ofTheLargestLatencyIsThatLatency() {
+        LatencyHistogram histogram = new LatencyHistogram("max");
+        histogram.record(Long.MAX_VALUE);
+        assertEquals(Long.MAX_VALUE, histogram.snapshot().getPercentileNanos(100));
+        assertEquals(Long.MAX_VALUE, histogram.snapshot().getMaxNanos());
+    }
+
+    @Test
+    public void percentiles_areWithinAFactorOfTwo() {
+        LatencyHistogram histogram = new LatencyHistogram("uniform");
+        for (int nanos = 1; nanos <= 1000; nanos++) {
+            histogram.record(nanos);
+        }
+
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(1000, snapshot.getCount());
+        assertEquals(500, snapshot.getMeanNanos());
+        assertEquals(1000, snapshot.getMaxNanos());
+        assertEquals(511, snapshot.getPercentileNanos(50));
+        assertEquals(1000, snapshot.getPercentileNanos(90));
+        assertEquals(1000, snapshot.getPercentileNanos(99));
+        for (int percentile = 1; percentile <= 100; percentile++) {
+            long exact = percentile * 10;
+            long reported = snapshot.getPercentileNanos(percentile);
+            assertTrue("p" + percentile + " " + reported, reported >= exact && reported < 2 * exact);
+        }
+    }
+
+    @Test
+    public void percentile_outOfRangeIsClamped() {
+        LatencyHistogram histogram = new LatencyHistogram("clamp");
+        histogram.record(10);
+        histogram.record(1000);
+
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(snapshot.getPercentileNanos(0), snapshot.getPercentileNanos(-1));
+        assertEquals(15, snapshot.getPercentileNanos(0));
+        assertEquals(snapshot.getPercentileNanos(100), snapshot.getPercentileNanos(200));
+    }
+
+    @Test
+    public void snapshot_isNotChangedByLaterRecordings() {
+        LatencyHistogram histogram = new LatencyHistogram("copy");
+        histogram.record(10);
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        histogram.record(1000);
+
+        assertEquals(1, snapshot.getCount());
+        assertEquals(10, snapshot.getMaxNanos());
+        assertEquals(10, snapshot.getPercentileNanos(100));
+    }
+
+    @Test
+    public void reset_clearsEverythingAndRecordingCarriesOn() {
+        LatencyHistogram histogram = new LatencyHistogram("reset");
+        histogram.record(1000);
+        histogram.record(5000);
+        histogram.reset();
+
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(0, snapshot.getCount());
+        assertEquals(0, snapshot.getMeanNanos());
+        assertEquals(0, snapshot.getMaxNanos());
+        assertEquals(0, snapshot.getPercentileNanos(100));
+
+        histogram.record(10);
+        snapshot = histogram.snapshot();
+        assertEquals(1, snapshot.getCount());
+        assertEquals(10, snapshot.getMaxNanos());
+    }
+
+    @Test
+    public void record_fromManyThreadsLosesNothing() throws InterruptedException {
+        final LatencyHistogram histogram = new LatencyHistogram("threads");
+        final int recordsPerThread = 10000;
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int t = 1; t <= 4; t++) {
+            final long nanos = t * 100;
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < recordsPerThread; i++) histogram.record(nanos);
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) thread.join();
+
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(4 * recordsPerThread, snapshot.getCount());
+        assertEquals(250, snapshot.getMeanNanos());
+        assertEquals(400, snapshot.getMaxNanos());
+    }
+}
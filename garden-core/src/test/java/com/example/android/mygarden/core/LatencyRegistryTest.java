@@ -0,0 +1,92 @@
+package com.example.android.mygarden.core;
+
+/*
+* Copyright (C) 2017 The Android Open Source Project
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*  	http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+import org.junit.Test;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+public class LatencyRegistryTest {
+
+    @Test
+    public void get_returnsOneHistogramPerName() {
+        LatencyRegistry registry = new LatencyRegistry();
+        LatencyHistogram insert = registry.get("insert");
+        assertSame(insert, registry.get("insert"));
+        assertNotSame(insert, registry.get("update"));
+        assertEquals("insert", insert.getName());
+    }
+
+    @Test
+    public void snapshot_listsHistogramsInTheOrderTheyWereFirstAskedFor() {
+        LatencyRegistry registry = new LatencyRegistry();
+        registry.get("b").record(1);
+        registry.get("a").record(2);
+        registry.get("b").record(3);
+
+        List<LatencyHistogram.Snapshot> snapshots = registry.snapshot();
+        assertEquals(2, snapshots.size());
+        assertEquals("b", snapshots.get(0).getName());
+        assertEquals(2, snapshots.get(0).getCount());
+        assertEquals("a", snapshots.get(1).getName());
+        assertEquals(1, snapshots.get(1).getCount());
+    }
+
+    @Test
+    public void reset_clearsEveryHistogramButKeepsThem() {
+        LatencyRegistry registry = new LatencyRegistry();
+        LatencyHistogram insert = registry.get("insert");
+        insert.record(1000);
+        registry.get("update").record(1000);
+        registry.reset();
+
+        List<LatencyHistogram.Snapshot> snapshots = registry.snapshot();
+        assertEquals(2, snapshots.size());
+        assertEquals(0, snapshots.get(0).getCount());
+        assertEquals(0, snapshots.get(1).getCount());
+        assertSame(insert, registry.get("insert"));
+    }
+
+    @Test
+    public void dump_writesOneLineInMicrosecondsPerHistogram() {
+        LatencyRegistry registry = new LatencyRegistry();
+        registry.get("provider.insert").record(1000000);
+        registry.get("provider.insert").record(3000000);
+        registry.get("provider.delete");
+
+        StringWriter out = new StringWriter();
+        PrintWriter writer = new PrintWriter(out);
+        registry.dump(writer);
+        writer.flush();
+
+        String[] lines = out.toString().split("\\r?\\n");
+        assertEquals(3, lines.length);
+        assertEquals("Latencies (us): count mean p50 p90 p99 max", lines[0]);
+        // p50 is the upper bound of the 2^19..2^20 ns bucket, the rest are capped at the max
+        assertArrayEquals(new String[]{"provider.insert", "2", "2000", "1048", "3000", "3000", "3000"},
+                lines[1].trim().split("\\s+"));
+        assertArrayEquals(new String[]{"provider.delete", "0", "0", "0", "0", "0", "0"},
+                lines[2].trim().split("\\s+"));
+    }
+}
@@ -0,0 +1,115 @@
+package com.example.android.mygarden.core;
+
+/*
+* Copyright (C) 2017 The Android Open Source Project
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*  	http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+import org.junit.Test;
+
+import static com.example.android.mygarden.core.PlantRules.DANGER_AGE_WITHOUT_WATER;
+import static com.example.android.mygarden.core.PlantRules.DAY_MILLISECONDS;
+import static com.example.android.mygarden.core.PlantRules.FULLY_GROWN_AGE;
+import static com.example.android.mygarden.core.PlantRules.HOUR_MILLISECONDS;
+import static com.example.android.mygarden.core.PlantRules.JUVENILE_AGE;
+import static com.example.android.mygarden.core.PlantRules.MAX_AGE_WITHOUT_WATER;
+import static com.example.android.mygarden.core.PlantRules.MINUTE_MILLISECONDS;
+import static com.example.android.mygarden.core.PlantRules.MIN_AGE_BETWEEN_WATER;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class PlantRulesTest {
+
+    private static final long TIME_NOW = 1500000000000L;
+
+    @Test
+    public void plantStatus_changesJustPastEachThreshold() {
+        assertEquals(PlantStatus.ALIVE, PlantRules.getPlantStatus(0));
+        assertEquals(PlantStatus.ALIVE, PlantRules.getPlantStatus(DANGER_AGE_WITHOUT_WATER));
+        assertEquals(PlantStatus.DYING, PlantRules.getPlantStatus(DANGER_AGE_WITHOUT_WATER + 1));
+        assertEquals(PlantStatus.DYING, PlantRules.getPlantStatus(MAX_AGE_WITHOUT_WATER));
+        assertEquals(PlantStatus.DEAD, PlantRules.getPlantStatus(MAX_AGE_WITHOUT_WATER + 1));
+    }
+
+    @Test
+    public void plantSize_changesJustPastEachThreshold() {
+        assertNull(PlantRules.getPlantSize(0));
+        assertEquals(PlantSize.TINY, PlantRules.getPlantSize(1));
+        assertEquals(PlantSize.TINY, PlantRules.getPlantSize(JUVENILE_AGE));
+        assertEquals(PlantSize.JUVENILE, PlantRules.getPlantSize(JUVENILE_AGE + 1));
+        assertEquals(PlantSize.JUVENILE, PlantRules.getPlantSize(FULLY_GROWN_AGE));
+        assertEquals(PlantSize.FULLY_GROWN, PlantRules.getPlantSize(FULLY_GROWN_AGE + 1));
+    }
+
+    @Test
+    public void canWater_onlyStrictlyBetweenTheThresholds() {
+        assertFalse(PlantRules.canWater(0));
+        assertFalse(PlantRules.canWater(MIN_AGE_BETWEEN_WATER));
+        assertTrue(PlantRules.canWater(MIN_AGE_BETWEEN_WATER + 1));
+        assertTrue(PlantRules.canWater(MAX_AGE_WITHOUT_WATER - 1));
+        assertFalse(PlantRules.canWater(MAX_AGE_WITHOUT_WATER));
+    }
+
+    @Test
+    public void waterPercent_fallsFromFullToEmpty() {
+        assertEquals(100, PlantRules.getWaterPercent(0));
+        assertEquals(50, PlantRules.getWaterPercent(MAX_AGE_WITHOUT_WATER / 2));
+        assertEquals(0, PlantRules.getWaterPercent(MAX_AGE_WITHOUT_WATER));
+    }
+
+    @Test
+    public void nextTransition_isTheFirstThresholdAfterNow() {
+        // Just planted and watered: it sprouts a millisecond later
+        assertEquals(TIME_NOW + 1, PlantRules.getNextTransitionTime(TIME_NOW, TIME_NOW, TIME_NOW));
+
+        // Sprouted, watered an hour ago: the water button comes back first
+        long createdAt = TIME_NOW - HOUR_MILLISECONDS;
+        long wateredAt = TIME_NOW - HOUR_MILLISECONDS;
+        assertEquals(wateredAt + MIN_AGE_BETWEEN_WATER + 1,
+                PlantRules.getNextTransitionTime(createdAt, wateredAt, TIME_NOW));
+
+        // Dying and juvenile: it dies before it grows
+        wateredAt = TIME_NOW - DANGER_AGE_WITHOUT_WATER - 1;
+        createdAt = TIME_NOW - JUVENILE_AGE - 1;
+        assertEquals(wateredAt + MAX_AGE_WITHOUT_WATER + 1,
+                PlantRules.getNextTransitionTime(createdAt, wateredAt, TIME_NOW));
+
+        // Exactly on a threshold the plant has not changed yet, so that is still the next change
+        assertEquals(TIME_NOW, PlantRules.getNextTransitionTime(
+                TIME_NOW - FULLY_GROWN_AGE - 1, TIME_NOW - DANGER_AGE_WITHOUT_WATER, TIME_NOW - 1));
+    }
+
+    @Test
+    public void nextTransition_isNeverForAGrownDeadPlant() {
+        long createdAt = TIME_NOW - 3 * DAY_MILLISECONDS;
+        long wateredAt = TIME_NOW - MAX_AGE_WITHOUT_WATER - 1;
+        assertEquals(Long.MAX_VALUE, PlantRules.getNextTransitionTime(createdAt, wateredAt, TIME_NOW));
+    }
+
+    @Test
+    public void displayAge_usesTheLargestWholeUnit() {
+        assertEquals(0, PlantRules.getDisplayAgeInt(MINUTE_MILLISECONDS - 1));
+        assertEquals(AgeUnit.MINUTES, PlantRules.getDisplayAgeUnit(MINUTE_MILLISECONDS - 1));
+        assertEquals(59, PlantRules.getDisplayAgeInt(HOUR_MILLISECONDS - 1));
+        assertEquals(AgeUnit.MINUTES, PlantRules.getDisplayAgeUnit(HOUR_MILLISECONDS - 1));
+        assertEquals(1, PlantRules.getDisplayAgeInt(HOUR_MILLISECONDS));
+        assertEquals(AgeUnit.HOURS, PlantRules.getDisplayAgeUnit(HOUR_MILLISECONDS));
+        assertEquals(23, PlantRules.getDisplayAgeInt(DAY_MILLISECONDS - 1));
+        assertEquals(AgeUnit.HOURS, PlantRules.getDisplayAgeUnit(DAY_MILLISECONDS - 1));
+        assertEquals(2, PlantRules.getDisplayAgeInt(2 * DAY_MILLISECONDS + HOUR_MILLISECONDS));
+        assertEquals(AgeUnit.DAYS, PlantRules.getDisplayAgeUnit(2 * DAY_MILLISECONDS));
+    }
+}